@@ -0,0 +1,211 @@
+package com.nikhil.nosqldb;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.nikhil.nosqldb.utils.Utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.nikhil.nosqldb.StoreFixture.OS_NAME;
+import static com.nikhil.nosqldb.StoreFixture.put;
+import static com.nikhil.nosqldb.constant.Constant.EXTRA_DATA_COLUMN;
+import static com.nikhil.nosqldb.constant.Constant.ROW_ID_COLUMN;
+import static org.junit.Assert.*;
+
+/**
+ * Backup file made by {@link Backup} holds the same rows as the source, however it was made.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BackupTest {
+    private static final String BACKUP_A = "backup_a_test.db";
+    private static final String BACKUP_B = "backup_b_test.db";
+    private static final int ROWS = 200;
+
+    private StoreFixture mFixture = new StoreFixture("backup_source_test.db", BACKUP_A, BACKUP_B);
+    private Context mContext;
+    private DataBase mDataBase;
+    private ObjectStore mObjectStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mObjectStore = mFixture.setUp();
+        mContext = mFixture.getContext();
+        mDataBase = mFixture.getDataBase();
+        for (int i = 0; i < ROWS; i++) {
+            put(mObjectStore, "n" + i, String.valueOf(i));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFixture.tearDown();
+    }
+
+    private void update(String name, String age) {
+        // Extra data holds every column apart from name
+        ContentValues values = new ContentValues();
+        values.put(EXTRA_DATA_COLUMN, "{\"age\":\"" + age + "\"}");
+        mDataBase.getWritableDatabase().update(OS_NAME, values, "name = ?", new String[]{name});
+    }
+
+    private void delete(String name) {
+        mDataBase.getWritableDatabase().delete(OS_NAME, "name = ?", new String[]{name});
+    }
+
+    /**
+     * Change some rows of every kind, logged for the next backup
+     */
+    private void change(int i) throws Exception {
+        put(mObjectStore, "new" + i, String.valueOf(i));
+        update("n" + i, "updated" + i);
+        delete("n" + (ROWS - 1 - i));
+    }
+
+    /**
+     * @return rows of every objectstore in row id order, by objectstore name
+     */
+    private static HashMap<String, List<ContentValues>> dump(SQLiteDatabase sqLiteDatabase) {
+        HashMap<String, List<ContentValues>> tables = new HashMap<>();
+        for (String table :
+                Utility.getOSNames(sqLiteDatabase)) {
+            List<ContentValues> rows = new ArrayList<>();
+            Cursor cursor = sqLiteDatabase.query(table, null, null, null, null, null, ROW_ID_COLUMN);
+            while (cursor.moveToNext()) {
+                rows.add(Utility.cursorRowToContentValues(cursor));
+            }
+            cursor.close();
+            tables.put(table, rows);
+        }
+        return tables;
+    }
+
+    private void assertBackupEquals(String backupName) {
+        SQLiteDatabase backup = SQLiteDatabase.openDatabase(mContext.getDatabasePath(backupName).getPath(),
+                null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            HashMap<String, List<ContentValues>> expected = dump(mDataBase.getReadableDatabase());
+            assertEquals(1, expected.size());
+            assertEquals(expected, dump(backup));
+        } finally {
+            backup.close();
+        }
+    }
+
+    private Backup runBackup(String backupName) throws Exception {
+        File destination = mContext.getDatabasePath(backupName);
+        Backup backup = mDataBase.backup(destination);
+        backup.setStepRows(50);
+        backup.setStepDelay(0);
+        backup.run();
+        return backup;
+    }
+
+    @Test
+    public void fullBackup() throws Exception {
+        Backup backup = runBackup(BACKUP_A);
+        assertFalse(backup.isIncremental());
+        assertBackupEquals(BACKUP_A);
+    }
+
+    @Test
+    public void writesWhileStepping() throws Exception {
+        Backup backup = mDataBase.backup(mContext.getDatabasePath(BACKUP_A));
+        backup.setStepRows(10);
+        int steps = 0;
+        try {
+            while (!backup.step()) {
+                // Writers never stop, replay must still end
+                assertTrue("Backup didn't finish", steps < ROWS / 2);
+                change(steps);
+                steps++;
+            }
+        } finally {
+            backup.close();
+        }
+        assertBackupEquals(BACKUP_A);
+    }
+
+    @Test
+    public void incrementalSecondRun() throws Exception {
+        runBackup(BACKUP_A);
+        for (int i = 0; i < 20; i++) {
+            change(i);
+        }
+        Backup backup = runBackup(BACKUP_A);
+        assertTrue(backup.isIncremental());
+        assertBackupEquals(BACKUP_A);
+    }
+
+    @Test
+    public void fullCopyAfterBackupToAnotherFile() throws Exception {
+        runBackup(BACKUP_A);
+        change(0);
+        runBackup(BACKUP_B);
+        change(1);
+        // Change log was cleared by backup to B, so A can't be updated incrementally
+        Backup backup = runBackup(BACKUP_A);
+        assertFalse(backup.isIncremental());
+        assertBackupEquals(BACKUP_A);
+        assertFalse(runBackup(BACKUP_B).isIncremental());
+        assertBackupEquals(BACKUP_B);
+    }
+
+    @Test
+    public void fullCopyAfterInterruptedRun() throws Exception {
+        runBackup(BACKUP_A);
+        for (int i = 0; i < 20; i++) {
+            change(i);
+        }
+        // Replay is stopped after its first step, before the file is complete
+        Backup interrupted = mDataBase.backup(mContext.getDatabasePath(BACKUP_A));
+        interrupted.setStepRows(10);
+        assertFalse(interrupted.step());
+        assertTrue(interrupted.isIncremental());
+        assertFalse(interrupted.step());
+        interrupted.close();
+
+        change(20);
+        Backup backup = runBackup(BACKUP_A);
+        assertFalse(backup.isIncremental());
+        assertBackupEquals(BACKUP_A);
+    }
+
+    @Test
+    public void concurrentBackups() throws Exception {
+        runBackup(BACKUP_A);
+        change(0);
+        Backup backup = mDataBase.backup(mContext.getDatabasePath(BACKUP_A));
+        backup.setStepRows(10);
+        try {
+            assertFalse(backup.step());
+            assertTrue(backup.isIncremental());
+            // Backup to B completes in between, it must not clear changes A hasn't replayed yet
+            change(1);
+            runBackup(BACKUP_B);
+            assertBackupEquals(BACKUP_B);
+            change(2);
+            int steps = 0;
+            while (!backup.step()) {
+                assertTrue("Backup didn't finish", steps++ < ROWS);
+            }
+        } finally {
+            backup.close();
+        }
+        assertBackupEquals(BACKUP_A);
+        change(3);
+        assertTrue(runBackup(BACKUP_A).isIncremental());
+        assertBackupEquals(BACKUP_A);
+    }
+}
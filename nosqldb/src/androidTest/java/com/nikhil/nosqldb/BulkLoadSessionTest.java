@@ -0,0 +1,202 @@
+package com.nikhil.nosqldb;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.nikhil.nosqldb.utils.Utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.nikhil.nosqldb.StoreFixture.age;
+import static com.nikhil.nosqldb.StoreFixture.count;
+import static com.nikhil.nosqldb.StoreFixture.put;
+import static com.nikhil.nosqldb.StoreFixture.row;
+import static org.junit.Assert.*;
+
+/**
+ * {@link BulkLoadSession} restores indexes and durability settings however the session ends.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkLoadSessionTest {
+    private static final String INDEX_NAME = StoreFixture.indexName(StoreFixture.OS_NAME);
+
+    private StoreFixture mFixture = new StoreFixture("bulk_load_test.db");
+    private DataBase mDataBase;
+    private ObjectStore mObjectStore;
+    private long mSynchronous;
+
+    @Before
+    public void setUp() throws Exception {
+        mObjectStore = mFixture.setUp();
+        mDataBase = mFixture.getDataBase();
+        mObjectStore.put(row("a", "1"));
+        mSynchronous = synchronous();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFixture.tearDown();
+    }
+
+    private long synchronous() {
+        return DatabaseUtils.longForQuery(mDataBase.getWritableDatabase(), "PRAGMA synchronous", null);
+    }
+
+    @Test
+    public void commitDropsDuplicateKeys() throws Exception {
+        BulkLoadSession session = mObjectStore.beginBulkLoad();
+        session.setBatchSize(2);
+        session.put(row("a", "2"));
+        session.put(row("b", "3"));
+        session.put(row("c", "4"));
+        session.put(row("b", "5"));
+        session.put(row("d", "6"));
+        BulkLoadResult result = session.commit();
+
+        assertFalse(session.isActive());
+        assertEquals(3, result.getInsertedCount());
+        assertEquals(2, result.getConflicts().size());
+        for (BulkLoadResult.Conflict conflict :
+                result.getConflicts()) {
+            assertEquals(INDEX_NAME, conflict.getIndexName());
+            assertEquals(1, conflict.getDroppedCount());
+            assertTrue(conflict.getKey().get(0).equals("a") || conflict.getKey().get(0).equals("b"));
+        }
+        assertEquals(4, count(mObjectStore));
+        assertEquals("1", age(mObjectStore, "a"));
+        assertEquals("3", age(mObjectStore, "b"));
+        assertTrue(Utility.isIndexExist(mDataBase, INDEX_NAME));
+        assertEquals(mSynchronous, synchronous());
+
+        // Index is enforced again
+        mObjectStore.put(row("c", "7"));
+        assertEquals(4, count(mObjectStore));
+        assertEquals("4", age(mObjectStore, "c"));
+    }
+
+    @Test
+    public void abortRemovesSessionRows() throws Exception {
+        BulkLoadSession session = mObjectStore.beginBulkLoad();
+        session.setBatchSize(2);
+        session.put(row("b", "2"));
+        session.put(row("c", "3"));
+        session.put(row("d", "4"));
+        session.abort();
+
+        assertFalse(session.isActive());
+        assertEquals(1, count(mObjectStore));
+        assertEquals("1", age(mObjectStore, "a"));
+        assertTrue(Utility.isIndexExist(mDataBase, INDEX_NAME));
+        assertEquals(mSynchronous, synchronous());
+    }
+
+    @Test
+    public void keepsRowsOfOtherWriters() throws Exception {
+        BulkLoadSession session = mObjectStore.beginBulkLoad();
+        session.setBatchSize(2);
+        session.put(row("b", "2"));
+        session.put(row("c", "3"));
+        // Written between batches, as another thread would
+        put(mObjectStore, "x", "4");
+        put(mObjectStore, "d", "5");
+        session.put(row("d", "6"));
+        session.put(row("e", "7"));
+        BulkLoadResult result = session.commit();
+
+        assertEquals(3, result.getInsertedCount());
+        assertEquals(1, result.getConflicts().size());
+        assertEquals("d", result.getConflicts().get(0).getKey().get(0));
+        assertEquals(6, count(mObjectStore));
+        assertEquals("4", age(mObjectStore, "x"));
+        assertEquals("5", age(mObjectStore, "d"));
+    }
+
+    @Test
+    public void abortKeepsRowsOfOtherWriters() throws Exception {
+        BulkLoadSession session = mObjectStore.beginBulkLoad();
+        session.setBatchSize(2);
+        session.put(row("b", "2"));
+        session.put(row("c", "3"));
+        put(mObjectStore, "x", "4");
+        session.put(row("d", "5"));
+        session.abort();
+
+        assertEquals(2, count(mObjectStore));
+        assertEquals("1", age(mObjectStore, "a"));
+        assertEquals("4", age(mObjectStore, "x"));
+        assertTrue(Utility.isIndexExist(mDataBase, INDEX_NAME));
+    }
+
+    @Test
+    public void initLeavesActiveSessionAlone() throws Exception {
+        BulkLoadSession session = mObjectStore.beginBulkLoad();
+        session.setBatchSize(1);
+        session.put(row("b", "2"));
+        session.put(row("b", "3"));
+
+        // Another instance of the same objectstore, e.g. on another thread
+        ObjectStore other = mFixture.createObjectStore(StoreFixture.OS_NAME);
+        other.init();
+        assertFalse(Utility.isIndexExist(mDataBase, INDEX_NAME));
+        assertEquals(3, count(mObjectStore));
+
+        session.put(row("c", "4"));
+        BulkLoadResult result = session.commit();
+        assertEquals(2, result.getInsertedCount());
+        assertEquals(3, count(mObjectStore));
+        assertEquals("2", age(mObjectStore, "b"));
+    }
+
+    @Test
+    public void onlyOneSessionPerObjectStore() throws Exception {
+        BulkLoadSession session = mObjectStore.beginBulkLoad();
+        try {
+            mFixture.createObjectStore(StoreFixture.OS_NAME).beginBulkLoad();
+            fail("Second session started");
+        } catch (Exception e) {
+            assertTrue(session.isActive());
+        } finally {
+            session.abort();
+        }
+        assertTrue(Utility.isIndexExist(mDataBase, INDEX_NAME));
+    }
+
+    @Test
+    public void initKeepsDuplicatesWithoutSession() throws Exception {
+        mDataBase.getWritableDatabase().execSQL("DROP INDEX " + INDEX_NAME);
+        put(mObjectStore, "a", "2");
+
+        mObjectStore = mFixture.createObjectStore(StoreFixture.OS_NAME);
+        try {
+            mObjectStore.init();
+            fail("Index created over duplicate keys");
+        } catch (SQLiteConstraintException e) {
+            // expected
+        }
+        assertEquals(2, count(mObjectStore));
+    }
+
+    @Test
+    public void initRecoversInterruptedSession() throws Exception {
+        BulkLoadSession session = mObjectStore.beginBulkLoad();
+        session.setBatchSize(1);
+        session.put(row("a", "2"));
+        session.put(row("b", "3"));
+        session.put(row("b", "4"));
+        assertFalse(Utility.isIndexExist(mDataBase, INDEX_NAME));
+
+        // Session is never finished, as if the app died
+        mDataBase = mFixture.reopen();
+        mObjectStore = mFixture.createObjectStore(StoreFixture.OS_NAME);
+        mObjectStore.init();
+
+        assertTrue(Utility.isIndexExist(mDataBase, INDEX_NAME));
+        assertEquals(2, count(mObjectStore));
+        assertEquals("1", age(mObjectStore, "a"));
+        assertEquals("3", age(mObjectStore, "b"));
+    }
+}
@@ -0,0 +1,183 @@
+package com.nikhil.nosqldb;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.nikhil.nosqldb.StoreFixture.age;
+import static com.nikhil.nosqldb.StoreFixture.count;
+import static com.nikhil.nosqldb.StoreFixture.put;
+import static org.junit.Assert.*;
+
+/**
+ * Rows exported by {@link ObjectStore#exportJson} import back unchanged with
+ * {@link ObjectStore#importJson}, as JSON array and as NDJSON.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImportExportTest {
+    private static final int ROWS = ObjectStore.DEFAULT_BATCH_SIZE * 2 + 500;
+    private static final List<Long> PROGRESS = Arrays.asList((long) ObjectStore.DEFAULT_BATCH_SIZE,
+            2L * ObjectStore.DEFAULT_BATCH_SIZE, (long) ROWS);
+
+    private StoreFixture mFixture = new StoreFixture("import_export_test.db");
+    private ObjectStore mObjectStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mObjectStore = mFixture.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFixture.tearDown();
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Collect progress reported to a listener
+     */
+    private static class Progress implements ProgressListener {
+        private List<Long> mDone = new ArrayList<>();
+
+        @Override
+        public void onProgress(long done, long total) {
+            assertEquals(-1, total);
+            mDone.add(done);
+        }
+    }
+
+    /**
+     * @return rows without row id, by name
+     */
+    private static HashMap<String, HashMap<String, String>> rows(ObjectStore objectStore) {
+        HashMap<String, HashMap<String, String>> rows = new HashMap<>();
+        OSCursor cursor = objectStore.getCursor();
+        while (cursor.moveToNext()) {
+            HashMap<String, String> row = new HashMap<>(cursor.getRow());
+            row.remove("_id");
+            rows.put(row.get("name"), row);
+        }
+        cursor.close();
+        return rows;
+    }
+
+    private void roundTrip(boolean asArray) throws Exception {
+        for (int i = 0; i < ROWS; i++) {
+            put(mObjectStore, "n" + i, String.valueOf(i));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Progress exportProgress = new Progress();
+        assertEquals(ROWS, mObjectStore.exportJson(out, null, null, asArray, exportProgress));
+        assertEquals(PROGRESS, exportProgress.mDone);
+
+        ObjectStore copy = mFixture.createObjectStore("people_copy");
+        copy.init();
+        Progress importProgress = new Progress();
+        ImportResult result = copy.importJson(new ByteArrayInputStream(out.toByteArray()),
+                ObjectStore.DEFAULT_BATCH_SIZE, importProgress);
+        assertEquals(ROWS, result.getImportedCount());
+        assertEquals(0, result.getSkippedCount());
+        assertEquals(PROGRESS, importProgress.mDone);
+        assertEquals(rows(mObjectStore), rows(copy));
+    }
+
+    @Test
+    public void roundTripsArray() throws Exception {
+        roundTrip(true);
+    }
+
+    @Test
+    public void roundTripsNdjson() throws Exception {
+        roundTrip(false);
+    }
+
+    @Test
+    public void exportsSelection() throws Exception {
+        put(mObjectStore, "a", "1");
+        put(mObjectStore, "b", "2");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, mObjectStore.exportJson(out, "name = ?", new String[]{"b"}, false, null));
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(json, json.contains("\"b\"") && !json.contains("\"a\""));
+    }
+
+    @Test
+    public void importsEmptyStream() throws Exception {
+        for (String json :
+                new String[]{"", "  \n", "[]"}) {
+            ImportResult result = mObjectStore.importJson(stream(json), 10, null);
+            assertEquals(0, result.getImportedCount());
+            assertEquals(0, result.getSkippedCount());
+        }
+        assertEquals(0, count(mObjectStore));
+    }
+
+    @Test
+    public void countsSkippedDuplicates() throws Exception {
+        put(mObjectStore, "b", "1");
+        ImportResult result = mObjectStore.importJson(stream("{\"name\":\"a\",\"age\":2}\n" +
+                "{\"name\":\"b\",\"age\":3}\n{\"name\":\"a\",\"age\":4}\n{\"name\":\"c\",\"age\":5}"), 2, null);
+
+        assertEquals(2, result.getImportedCount());
+        assertEquals(2, result.getSkippedCount());
+        assertEquals(3, count(mObjectStore));
+        assertEquals("2", age(mObjectStore, "a"));
+        assertEquals("1", age(mObjectStore, "b"));
+    }
+
+    @Test
+    public void storesNestedValuesAsJson() throws Exception {
+        mObjectStore.importJson(stream("[{\"name\":\"a\",\"address\":{\"city\":\"Delhi\"}," +
+                "\"tags\":[1,\"x\"],\"active\":true,\"spouse\":null}]"), 10, null);
+
+        OSCursor cursor = mObjectStore.query("name = ?", new String[]{"a"});
+        assertTrue(cursor.moveToFirst());
+        assertEquals("{\"city\":\"Delhi\"}", cursor.getValue("address"));
+        assertEquals("[1,\"x\"]", cursor.getValue("tags"));
+        assertEquals("true", cursor.getValue("active"));
+        assertNull(cursor.getValue("spouse"));
+        cursor.close();
+    }
+
+    @Test
+    public void listenerFailureIsNotHidden() throws Exception {
+        final RuntimeException failure = new RuntimeException("listener failed");
+        try {
+            mObjectStore.importJson(stream("{\"name\":\"a\"}\n{\"name\":\"b\"}\n{\"name\":\"c\"}"), 2,
+                    new ProgressListener() {
+                        @Override
+                        public void onProgress(long done, long total) {
+                            throw failure;
+                        }
+                    });
+            fail("Listener failure swallowed");
+        } catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+        // First batch was committed and no transaction is left open
+        assertFalse(mFixture.getDataBase().getWritableDatabase().inTransaction());
+        assertEquals(2, count(mObjectStore));
+        put(mObjectStore, "d", "1");
+        assertEquals(3, count(mObjectStore));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveBatchSize() throws Exception {
+        mObjectStore.importJson(stream("{\"name\":\"a\"}"), 0, null);
+    }
+}
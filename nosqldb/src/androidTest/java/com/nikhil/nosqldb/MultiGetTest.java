@@ -0,0 +1,73 @@
+package com.nikhil.nosqldb;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static com.nikhil.nosqldb.StoreFixture.put;
+import static org.junit.Assert.*;
+
+/**
+ * Rows returned by {@link ObjectStore#getMany(String, java.util.Collection)} keep the order
+ * of requested keys, also across chunks of IN queries.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MultiGetTest {
+    private static final String INDEX_NAME = StoreFixture.indexName(StoreFixture.OS_NAME);
+
+    private StoreFixture mFixture = new StoreFixture("multi_get_test.db");
+    private ObjectStore mObjectStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mObjectStore = mFixture.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFixture.tearDown();
+    }
+
+    @Test
+    public void returnsRowsInKeyOrder() throws Exception {
+        put(mObjectStore, "a", "1");
+        put(mObjectStore, "b", "2");
+        put(mObjectStore, "", "3");
+        MultiGetResult result = mObjectStore.getMany(INDEX_NAME, Arrays.asList("b", "x", "", "a", "b"));
+
+        assertEquals(Arrays.asList("x"), result.getMissingKeys());
+        assertEquals(Arrays.asList("b", "", "a"), new ArrayList<>(result.getRows().keySet()));
+        assertEquals("2", result.getRow("b").get("age"));
+        assertEquals("", result.getRow("").get("name"));
+        assertEquals("3", result.getRow("").get("age"));
+        assertEquals("1", result.getRow("a").get("age"));
+    }
+
+    @Test
+    public void fetchesMoreKeysThanOneQueryTakes() throws Exception {
+        ArrayList<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            put(mObjectStore, "n" + i, String.valueOf(i));
+            keys.add("n" + (2499 - i));
+        }
+        MultiGetResult result = mObjectStore.getMany(INDEX_NAME, keys);
+
+        assertTrue(result.isComplete());
+        assertEquals(keys, new ArrayList<>(result.getRows().keySet()));
+        for (String key :
+                keys) {
+            assertEquals(key, result.getRow(key).get("name"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNullKey() throws Exception {
+        mObjectStore.getMany(INDEX_NAME, Arrays.asList("a", null));
+    }
+}
@@ -0,0 +1,155 @@
+package com.nikhil.nosqldb;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.nikhil.nosqldb.StoreFixture.count;
+import static org.junit.Assert.*;
+
+/**
+ * Stress ObjectStore with concurrent readers and writers on an Android device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ObjectStoreConcurrencyTest {
+    private static final String NEW_OS_NAME = "new_people";
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ROWS_PER_WRITER = 500;
+
+    private StoreFixture mFixture = new StoreFixture("concurrency_test.db");
+    private ObjectStore mObjectStore;
+    private ConcurrentLinkedQueue<Throwable> mErrors = new ConcurrentLinkedQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mObjectStore = mFixture.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFixture.tearDown();
+    }
+
+    @Test
+    public void writeAheadLoggingEnabledByDefault() throws Exception {
+        assertTrue(mFixture.getDataBase().isWriteAheadLoggingEnabled());
+    }
+
+    @Test
+    public void mixedReadWriteLoad() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        final AtomicBoolean isWriting = new AtomicBoolean(true);
+
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < ROWS_PER_WRITER; i++) {
+                            HashMap<String, String> values = new HashMap<>();
+                            values.put("name", "w" + writer + "_" + i);
+                            values.put("age", String.valueOf(i));
+                            mObjectStore.put(values);
+                        }
+                    } catch (Throwable t) {
+                        mErrors.add(t);
+                    } finally {
+                        writersDone.countDown();
+                    }
+                }
+            });
+        }
+        for (int r = 0; r < READERS; r++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        int lastCount = 0;
+                        while (isWriting.get()) {
+                            int count = count(mObjectStore);
+                            assertTrue("Row count went back", count >= lastCount);
+                            lastCount = count;
+                            OSCursor cursor = mObjectStore.query("name = ?", new String[]{"w0_0"});
+                            while (cursor.moveToNext()) {
+                                assertEquals("0", cursor.getValue("age"));
+                            }
+                            cursor.close();
+                        }
+                    } catch (Throwable t) {
+                        mErrors.add(t);
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        assertTrue(writersDone.await(2, TimeUnit.MINUTES));
+        isWriting.set(false);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertTrue(mErrors.toString(), mErrors.isEmpty());
+        assertEquals(WRITERS * ROWS_PER_WRITER, count(mObjectStore));
+        for (int w = 0; w < WRITERS; w++) {
+            OSCursor cursor = mObjectStore.query("name = ?", new String[]{"w" + w + "_" + (ROWS_PER_WRITER - 1)});
+            assertTrue(cursor.moveToFirst());
+            assertEquals(String.valueOf(ROWS_PER_WRITER - 1), cursor.getValue("age"));
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void concurrentInitAndPut() throws Exception {
+        // Store is not created yet, so every thread races to create it in init()
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        ObjectStore objectStore = mFixture.createObjectStore(NEW_OS_NAME);
+                        objectStore.init();
+                        HashMap<String, String> values = new HashMap<>();
+                        values.put("name", "init" + writer);
+                        values.put("age", String.valueOf(writer));
+                        objectStore.put(values);
+                    } catch (Throwable t) {
+                        mErrors.add(t);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertTrue(mErrors.toString(), mErrors.isEmpty());
+        ObjectStore objectStore = mFixture.createObjectStore(NEW_OS_NAME);
+        objectStore.init();
+        assertEquals(WRITERS, count(objectStore));
+        OSCursor cursor = objectStore.query("name = ?", new String[]{"init0"});
+        assertTrue(cursor.moveToFirst());
+        assertEquals("0", cursor.getValue("age"));
+        cursor.close();
+    }
+}
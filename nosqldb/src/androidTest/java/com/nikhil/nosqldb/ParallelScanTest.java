@@ -0,0 +1,123 @@
+package com.nikhil.nosqldb;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+
+import static com.nikhil.nosqldb.StoreFixture.put;
+import static org.junit.Assert.*;
+
+/**
+ * {@link ObjectStore#parallelScan(String, String[], int, ScanReducer)} visits every row once
+ * and gives the same result as a sequential pass.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ParallelScanTest {
+    private static final int ROWS = 2000;
+
+    private StoreFixture mFixture = new StoreFixture("parallel_scan_test.db");
+    private ObjectStore mObjectStore;
+
+    /**
+     * Collect name to age of every row
+     */
+    private static final ScanReducer<HashMap<String, String>> AGE_BY_NAME = new ScanReducer<HashMap<String, String>>() {
+        @Override
+        public HashMap<String, String> createAccumulator() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public HashMap<String, String> accumulate(HashMap<String, String> accumulator, HashMap<String, String> row) {
+            assertNull("Row scanned twice", accumulator.put(row.get("name"), row.get("age")));
+            return accumulator;
+        }
+
+        @Override
+        public HashMap<String, String> combine(HashMap<String, String> left, HashMap<String, String> right) {
+            for (String name :
+                    right.keySet()) {
+                assertFalse("Row scanned twice", left.containsKey(name));
+            }
+            left.putAll(right);
+            return left;
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        mFixture.tearDown();
+    }
+
+    private void open(boolean enableWriteAheadLogging, int rows) throws Exception {
+        mObjectStore = mFixture.setUp(enableWriteAheadLogging);
+        for (int i = 0; i < rows; i++) {
+            put(mObjectStore, "n" + i, String.valueOf(i % 90));
+        }
+    }
+
+    private HashMap<String, String> sequentialScan() {
+        HashMap<String, String> ageByName = new HashMap<>();
+        OSCursor cursor = mObjectStore.getCursor();
+        while (cursor.moveToNext()) {
+            ageByName.put(cursor.getValue("name"), cursor.getValue("age"));
+        }
+        cursor.close();
+        return ageByName;
+    }
+
+    @Test
+    public void matchesSequentialScan() throws Exception {
+        open(true, ROWS);
+        HashMap<String, String> expected = sequentialScan();
+        assertEquals(ROWS, expected.size());
+        assertEquals(expected, mObjectStore.parallelScan(AGE_BY_NAME));
+        assertEquals(expected, mObjectStore.parallelScan(null, null, 3, AGE_BY_NAME));
+    }
+
+    @Test
+    public void appliesSelection() throws Exception {
+        open(true, ROWS);
+        HashMap<String, String> result = mObjectStore.parallelScan("name LIKE ?", new String[]{"n1%"},
+                4, AGE_BY_NAME);
+        HashMap<String, String> expected = sequentialScan();
+        expected.keySet().retainAll(result.keySet());
+        assertEquals(expected, result);
+        assertEquals(1111, result.size());
+    }
+
+    @Test
+    public void scansSequentiallyWithoutWriteAheadLogging() throws Exception {
+        open(false, ROWS);
+        assertEquals(sequentialScan(), mObjectStore.parallelScan(null, null, 4, AGE_BY_NAME));
+    }
+
+    @Test
+    public void scansInsideTransaction() throws Exception {
+        open(true, ROWS);
+        HashMap<String, String> expected = sequentialScan();
+        DataBase dataBase = mFixture.getDataBase();
+        dataBase.getWritableDatabase().beginTransactionNonExclusive();
+        try {
+            assertEquals(expected, mObjectStore.parallelScan(null, null, 4, AGE_BY_NAME));
+        } finally {
+            dataBase.getWritableDatabase().endTransaction();
+        }
+    }
+
+    @Test
+    public void emptyStore() throws Exception {
+        open(true, 0);
+        assertTrue(mObjectStore.parallelScan(AGE_BY_NAME).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveParallelism() throws Exception {
+        open(true, 1);
+        mObjectStore.parallelScan(null, null, 0, AGE_BY_NAME);
+    }
+}
@@ -0,0 +1,192 @@
+package com.nikhil.nosqldb;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.nikhil.nosqldb.utils.PayloadCodec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.nikhil.nosqldb.StoreFixture.OS_NAME;
+import static com.nikhil.nosqldb.StoreFixture.row;
+import static com.nikhil.nosqldb.constant.Constant.EXTRA_DATA_COLUMN;
+import static org.junit.Assert.*;
+
+/**
+ * Compressed extra data is stored as BLOB and read back through {@link OSCursor},
+ * next to rows stored before compression was enabled.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PayloadCompressionTest {
+    private static final int THRESHOLD = 64;
+
+    private StoreFixture mFixture = new StoreFixture("payload_compression_test.db");
+    private DataBase mDataBase;
+    private ObjectStore mObjectStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mObjectStore = mFixture.setUp();
+        mDataBase = mFixture.getDataBase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFixture.tearDown();
+    }
+
+    private static HashMap<String, String> largeRow(String name) {
+        HashMap<String, String> values = row(name, "30");
+        StringBuilder bio = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            bio.append("lorem ipsum dolor sit amet ");
+        }
+        values.put("bio", bio.toString());
+        values.put("city", "Delhi");
+        return values;
+    }
+
+    private String typeOf(String name) {
+        Cursor cursor = mDataBase.getReadableDatabase().rawQuery("SELECT typeof(" + EXTRA_DATA_COLUMN +
+                ") FROM " + OS_NAME + " WHERE name = ?", new String[]{name});
+        cursor.moveToFirst();
+        String type = cursor.getString(0);
+        cursor.close();
+        return type;
+    }
+
+    private HashMap<String, String> get(ObjectStore objectStore, String name) {
+        OSCursor cursor = objectStore.query("name = ?", new String[]{name});
+        assertTrue(cursor.moveToFirst());
+        HashMap<String, String> row = new HashMap<>(cursor.getRow());
+        cursor.close();
+        row.remove("_id");
+        return row;
+    }
+
+    @Test
+    public void storesLargePayloadAsBlob() throws Exception {
+        mObjectStore.setPayloadCompression(THRESHOLD);
+        mObjectStore.put(largeRow("large"));
+        mObjectStore.put(row("small", "1"));
+
+        assertEquals("blob", typeOf("large"));
+        assertEquals("text", typeOf("small"));
+        assertEquals(largeRow("large"), get(mObjectStore, "large"));
+        assertEquals(row("small", "1"), get(mObjectStore, "small"));
+    }
+
+    @Test
+    public void readsMixedRows() throws Exception {
+        mObjectStore.put(largeRow("before"));
+        mObjectStore.setPayloadCompression(THRESHOLD);
+        mObjectStore.put(largeRow("compressed"));
+        mObjectStore.disablePayloadCompression();
+        mObjectStore.put(largeRow("after"));
+
+        assertEquals("text", typeOf("before"));
+        assertEquals("blob", typeOf("compressed"));
+        assertEquals("text", typeOf("after"));
+        OSCursor cursor = mObjectStore.getCursor();
+        List<String> names = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            names.add(cursor.getValue("name"));
+            assertEquals("Delhi", cursor.getValue("city"));
+        }
+        cursor.close();
+        assertEquals(3, names.size());
+    }
+
+    @Test
+    public void decodesPayloadOnlyWhenRead() throws Exception {
+        mObjectStore.setPayloadCompression(THRESHOLD);
+        mObjectStore.put(largeRow("large"));
+        ContentValues values = new ContentValues();
+        values.put(EXTRA_DATA_COLUMN, new byte[]{1, 0, 0, 0, 9, 0, 0});
+        mDataBase.getWritableDatabase().update(OS_NAME, values, "name = ?", new String[]{"large"});
+
+        OSCursor cursor = mObjectStore.getCursor();
+        assertTrue(cursor.moveToFirst());
+        // Indexed columns don't need the payload
+        assertEquals("large", cursor.getValue("name"));
+        try {
+            cursor.getValue("city");
+            fail("Corrupt payload decoded");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void reportsPayloadStats() throws Exception {
+        mObjectStore.put(row("small", "1"));
+        mObjectStore.put(largeRow("before"));
+        mObjectStore.setPayloadCompression(THRESHOLD);
+        mObjectStore.put(largeRow("large1"));
+        mObjectStore.put(largeRow("large2"));
+
+        long rawBytes = 0, storedBytes = 0;
+        Cursor cursor = mDataBase.getReadableDatabase().query(OS_NAME, new String[]{EXTRA_DATA_COLUMN},
+                null, null, null, null, null);
+        while (cursor.moveToNext()) {
+            if (cursor.getType(0) == Cursor.FIELD_TYPE_BLOB) {
+                byte[] blob = cursor.getBlob(0);
+                rawBytes += PayloadCodec.decompress(blob, (byte[]) null).getBytes(StandardCharsets.UTF_8).length;
+                storedBytes += blob.length;
+            } else {
+                int length = cursor.getString(0).getBytes(StandardCharsets.UTF_8).length;
+                rawBytes += length;
+                storedBytes += length;
+            }
+        }
+        cursor.close();
+
+        PayloadStats stats = mObjectStore.getPayloadStats();
+        assertEquals(4, stats.getRowCount());
+        assertEquals(2, stats.getCompressedRowCount());
+        assertEquals(rawBytes, stats.getRawBytes());
+        assertEquals(storedBytes, stats.getStoredBytes());
+        assertTrue(stats.getSavedBytes() > 0);
+    }
+
+    @Test
+    public void readsRowsOfOlderDictionary() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            mObjectStore.put(largeRow("sample" + i));
+        }
+        byte[] oldDictionary = mObjectStore.trainPayloadDictionary(20, 4096);
+        mObjectStore.setPayloadCompression(THRESHOLD, oldDictionary);
+        mObjectStore.put(largeRow("old"));
+        byte[] newDictionary = mObjectStore.trainPayloadDictionary(21, 64);
+        assertNotEquals(PayloadCodec.getDictionaryId(oldDictionary), PayloadCodec.getDictionaryId(newDictionary));
+        mObjectStore.setPayloadCompression(THRESHOLD, newDictionary);
+        mObjectStore.put(largeRow("newer"));
+
+        assertEquals(largeRow("old"), get(mObjectStore, "old"));
+        assertEquals(largeRow("newer"), get(mObjectStore, "newer"));
+
+        // Reopened store knows only the dictionaries set or added again
+        ObjectStore reopened = mFixture.createObjectStore(OS_NAME);
+        reopened.init();
+        reopened.setPayloadCompression(THRESHOLD, newDictionary);
+        try {
+            get(reopened, "old");
+            fail("Row read without its dictionary");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        reopened.addPayloadDictionary(oldDictionary);
+        assertEquals(largeRow("old"), get(reopened, "old"));
+    }
+}
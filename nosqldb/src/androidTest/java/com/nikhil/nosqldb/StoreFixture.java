@@ -0,0 +1,128 @@
+package com.nikhil.nosqldb;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Database on the device holding objectstores with a unique index on "name",
+ * created fresh for every test and deleted after it.
+ */
+class StoreFixture {
+    static final String OS_NAME = "people";
+
+    private String mDbName;
+    private String[] mOtherDbNames;
+    private boolean mEnableWriteAheadLogging;
+    private Context mContext;
+    private DataBase mDataBase;
+
+    /**
+     * @param dbName       Name of database to create
+     * @param otherDbNames Other databases written by the test, deleted along with it
+     */
+    StoreFixture(String dbName, String... otherDbNames) {
+        mDbName = dbName;
+        mOtherDbNames = otherDbNames;
+    }
+
+    /**
+     * Create the database with write-ahead logging and an initialized objectstore {@link #OS_NAME}
+     */
+    ObjectStore setUp() throws Exception {
+        return setUp(true);
+    }
+
+    ObjectStore setUp(boolean enableWriteAheadLogging) throws Exception {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mEnableWriteAheadLogging = enableWriteAheadLogging;
+        deleteDatabases();
+        mDataBase = new DataBase(mDbName, mContext, enableWriteAheadLogging);
+        ObjectStore objectStore = createObjectStore(OS_NAME);
+        objectStore.init();
+        return objectStore;
+    }
+
+    void tearDown() {
+        if (mContext == null) {
+            return;
+        }
+        if (mDataBase != null) {
+            mDataBase.close();
+        }
+        deleteDatabases();
+    }
+
+    private void deleteDatabases() {
+        mContext.deleteDatabase(mDbName);
+        for (String dbName :
+                mOtherDbNames) {
+            mContext.deleteDatabase(dbName);
+        }
+    }
+
+    /**
+     * Close the database and open it again, as the app does after it was killed
+     */
+    DataBase reopen() {
+        mDataBase.close();
+        mDataBase = new DataBase(mDbName, mContext, mEnableWriteAheadLogging);
+        return mDataBase;
+    }
+
+    Context getContext() {
+        return mContext;
+    }
+
+    DataBase getDataBase() {
+        return mDataBase;
+    }
+
+    /**
+     * Create objectstore with index {@link #indexName(String)}, {@link ObjectStore#init()} is not called
+     */
+    ObjectStore createObjectStore(String osName) {
+        ObjectStore objectStore = mDataBase.createObjectStore(osName);
+        ArrayList<String> nameCol = new ArrayList<>();
+        nameCol.add("name");
+        objectStore.createIndex(indexName(osName), nameCol);
+        return objectStore;
+    }
+
+    /**
+     * Index names are global in SQLite, so every objectstore gets its own
+     */
+    static String indexName(String osName) {
+        return osName + "_nameind";
+    }
+
+    static HashMap<String, String> row(String name, String age) {
+        HashMap<String, String> values = new HashMap<>();
+        values.put("name", name);
+        values.put("age", age);
+        return values;
+    }
+
+    static void put(ObjectStore objectStore, String name, String age) throws Exception {
+        objectStore.put(row(name, age));
+    }
+
+    static int count(ObjectStore objectStore) {
+        OSCursor cursor = objectStore.getCursor();
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    /**
+     * @return age of the row with name, null if there is none
+     */
+    static String age(ObjectStore objectStore, String name) {
+        OSCursor cursor = objectStore.query("name = ?", new String[]{name});
+        String age = cursor.moveToFirst() ? cursor.getValue("age") : null;
+        cursor.close();
+        return age;
+    }
+}
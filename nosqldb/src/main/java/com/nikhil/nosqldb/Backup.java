@@ -0,0 +1,459 @@
+package com.nikhil.nosqldb;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nikhil.nosqldb.utils.Utility;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.nikhil.nosqldb.constant.Constant.BACKUP_META_TABLE;
+import static com.nikhil.nosqldb.constant.Constant.CHANGE_LOG_TABLE;
+import static com.nikhil.nosqldb.constant.Constant.INTERNAL_TABLE_PREFIX;
+import static com.nikhil.nosqldb.constant.Constant.ROW_ID_COLUMN;
+
+/**
+ * Online backup of a {@link DataBase} into another database file.
+ * <p>
+ * Backup copies rows in small steps while the database stays open, writers keep running
+ * between steps. Changes made to objectstores are recorded by triggers in a change log,
+ * which is replayed to pick up rows changed during the backup. The last step holds the write lock
+ * for a moment to replay remaining changes, so the backup is a consistent snapshot of the database.
+ * </p>
+ * <p>
+ * Next backup into the same file copies only rows changed since the previous backup.
+ * The change log is cleared after every backup, so only the most recent backup file
+ * can be updated incrementally, others are copied fully again. A file whose backup
+ * didn't complete is marked as such and copied fully again by the next backup.
+ * Backups of the same {@link DataBase} can run at the same time, the change log is cleared
+ * only up to the changes every running backup has replayed.
+ * </p>
+ * <p class="caution">
+ * Once a backup is taken every write also records its row id in the change log until
+ * {@link #dropChangeLog(DataBase)} is called. Objectstores whose name starts with
+ * {@value com.nikhil.nosqldb.constant.Constant#INTERNAL_TABLE_PREFIX} are not backed up.
+ * </p>
+ *
+ * @author Nikhil
+ * @see DataBase#backup(File)
+ */
+public class Backup {
+    public static final int DEFAULT_STEP_ROWS = 500;
+    public static final long DEFAULT_STEP_DELAY = 10;
+    private static final String META_LAST_SEQ = "last_seq";
+    private static final String META_SOURCE = "source";
+    private static final String META_PRUNED_SEQ = "pruned_seq";
+    private static final String META_LOG_ID = "log_id";
+    private static final String META_IN_PROGRESS = "in_progress";
+    private static final int STATE_INIT = 0;
+    private static final int STATE_COPY = 1;
+    private static final int STATE_REPLAY = 2;
+    private static final int STATE_DONE = 3;
+    private static final Set<Backup> sRunningBackups =
+            Collections.newSetFromMap(new ConcurrentHashMap<Backup, Boolean>());
+
+    private DataBase mSource;
+    private File mDestination;
+    private SQLiteDatabase mSourceDB;
+    private SQLiteDatabase mDestDB;
+    private int mStepRows = DEFAULT_STEP_ROWS;
+    private long mStepDelay = DEFAULT_STEP_DELAY;
+    private ProgressListener mListener;
+    private int mState = STATE_INIT;
+    private boolean mIsIncremental = false;
+    private HashSet<String> mTables = new HashSet<>();
+    private LinkedList<String> mTablesToCopy = new LinkedList<>();
+    private long mLastRowId = Long.MIN_VALUE;
+    private volatile long mReplaySeq;
+    private long mTargetSeq;
+    private long mDone = 0;
+    private long mTotal = 0;
+
+    /**
+     * @param source      Database to backup
+     * @param destination File to write backup to, updated incrementally if it has a previous backup
+     */
+    public Backup(DataBase source, File destination) {
+        mSource = source;
+        mDestination = destination;
+    }
+
+    /**
+     * Set maximum number of rows copied by one {@link #step()}
+     *
+     * @param stepRows Number of rows, default is {@link #DEFAULT_STEP_ROWS}
+     * @throws IllegalArgumentException if stepRows is less than 1
+     */
+    public void setStepRows(int stepRows) {
+        if (stepRows < 1) {
+            throw new IllegalArgumentException("stepRows must be positive: " + stepRows);
+        }
+        mStepRows = stepRows;
+    }
+
+    /**
+     * Set pause between steps of {@link #run()}, to limit I/O used by the backup
+     *
+     * @param stepDelay Pause in milliseconds, default is {@link #DEFAULT_STEP_DELAY}
+     */
+    public void setStepDelay(long stepDelay) {
+        mStepDelay = stepDelay;
+    }
+
+    /**
+     * @param listener Called after every step with number of rows copied and estimated total, can be null
+     */
+    public void setProgressListener(ProgressListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @return true if only changes since the previous backup are copied, known after first {@link #step()}
+     */
+    public boolean isIncremental() {
+        return mIsIncremental;
+    }
+
+    /**
+     * Run backup to completion, pausing between steps, and close destination.
+     *
+     * @throws Exception
+     */
+    public void run() throws Exception {
+        try {
+            while (!step()) {
+                if (mStepDelay > 0) {
+                    Thread.sleep(mStepDelay);
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Copy next set of rows.
+     * <p>
+     * Destination is a valid backup only once this returns true.
+     * </p>
+     *
+     * @return true if backup is complete
+     * @throws Exception
+     */
+    public boolean step() throws Exception {
+        switch (mState) {
+            case STATE_INIT:
+                setup();
+                break;
+            case STATE_COPY:
+                copyTableStep();
+                break;
+            case STATE_REPLAY:
+                // Changes logged after copy ended are left for finish(), so steady writes can't keep backup running
+                if (replayChanges() < mStepRows || mReplaySeq >= mTargetSeq) {
+                    finish();
+                }
+                break;
+            default:
+                return true;
+        }
+        if (mListener != null) {
+            mTotal = Math.max(mTotal, mDone);
+            mListener.onProgress(mDone, mTotal);
+        }
+        return mState == STATE_DONE;
+    }
+
+    /**
+     * Close destination database.
+     * <p>
+     * Call it when a backup is stopped before completing, until then the change log
+     * of source keeps changes this backup hasn't replayed.
+     * </p>
+     */
+    public void close() {
+        sRunningBackups.remove(this);
+        if (mDestDB != null && mDestDB.isOpen()) {
+            mDestDB.close();
+        }
+    }
+
+    /**
+     * Install change log on source and decide what has to be copied to destination
+     */
+    private void setup() {
+        mDestDB = SQLiteDatabase.openOrCreateDatabase(mDestination, null);
+        createMetaTable(mDestDB);
+        long lastSeq = Long.parseLong(readMeta(mDestDB, META_LAST_SEQ, "-1"));
+        String destSource = readMeta(mDestDB, META_SOURCE, null);
+        boolean wasInProgress = readMeta(mDestDB, META_IN_PROGRESS, null) != null;
+
+        mSourceDB = mSource.getWritableDatabase();
+        String logId;
+        long startSeq;
+        mSourceDB.beginTransactionNonExclusive();
+        try {
+            mSourceDB.execSQL("CREATE TABLE IF NOT EXISTS " + CHANGE_LOG_TABLE +
+                    " (seq INTEGER PRIMARY KEY AUTOINCREMENT, tbl TEXT NOT NULL, row_id INTEGER NOT NULL)");
+            createMetaTable(mSourceDB);
+            // Identifies this change log, backups taken with a dropped log can't be updated
+            logId = readMeta(mSourceDB, META_LOG_ID, null);
+            if (logId == null) {
+                logId = UUID.randomUUID().toString();
+                writeMeta(mSourceDB, META_LOG_ID, logId);
+            }
+            mTables.addAll(Utility.getOSNames(mSourceDB));
+            for (String table :
+                    mTables) {
+                createTriggers(table);
+            }
+            long prunedSeq = Long.parseLong(readMeta(mSourceDB, META_PRUNED_SEQ, "0"));
+            startSeq = Math.max(prunedSeq, DatabaseUtils.longForQuery(mSourceDB,
+                    "SELECT IFNULL(MAX(seq), 0) FROM " + CHANGE_LOG_TABLE, null));
+            mIsIncremental = !wasInProgress && lastSeq >= prunedSeq && lastSeq <= startSeq &&
+                    logId.equals(destSource);
+            // Registered while holding the write lock, so no other backup prunes changes this one needs
+            mReplaySeq = mIsIncremental ? lastSeq : startSeq;
+            sRunningBackups.add(this);
+            mSourceDB.setTransactionSuccessful();
+        } finally {
+            mSourceDB.endTransaction();
+        }
+
+        List<String> destTables = Utility.getOSNames(mDestDB);
+        mDestDB.beginTransaction();
+        try {
+            for (String table :
+                    destTables) {
+                if (!mIsIncremental || !mTables.contains(table)) {
+                    mDestDB.execSQL("DROP TABLE IF EXISTS " + table);
+                }
+            }
+            for (String table :
+                    mTables) {
+                if (!mIsIncremental || !destTables.contains(table)) {
+                    createDestTable(table);
+                    mTablesToCopy.add(table);
+                    mTotal += DatabaseUtils.queryNumEntries(mSourceDB, table);
+                }
+            }
+            // Destination is not a valid snapshot until finish() clears it
+            writeMeta(mDestDB, META_IN_PROGRESS, "1");
+            writeMeta(mDestDB, META_SOURCE, logId);
+            mDestDB.setTransactionSuccessful();
+        } finally {
+            mDestDB.endTransaction();
+        }
+        mTotal += startSeq - mReplaySeq;
+        if (mTablesToCopy.isEmpty()) {
+            startReplay();
+        } else {
+            mState = STATE_COPY;
+        }
+    }
+
+    private void createTriggers(String table) {
+        String log = " INSERT INTO " + CHANGE_LOG_TABLE + " (tbl, row_id) ";
+        String prefix = "CREATE TRIGGER IF NOT EXISTS " + INTERNAL_TABLE_PREFIX + table;
+        mSourceDB.execSQL(prefix + "_insert AFTER INSERT ON " + table + " BEGIN" + log +
+                "VALUES ('" + table + "', NEW." + ROW_ID_COLUMN + "); END");
+        mSourceDB.execSQL(prefix + "_update AFTER UPDATE ON " + table + " BEGIN" + log +
+                "VALUES ('" + table + "', NEW." + ROW_ID_COLUMN + ");" + log +
+                "SELECT '" + table + "', OLD." + ROW_ID_COLUMN +
+                " WHERE OLD." + ROW_ID_COLUMN + " != NEW." + ROW_ID_COLUMN + "; END");
+        mSourceDB.execSQL(prefix + "_delete AFTER DELETE ON " + table + " BEGIN" + log +
+                "VALUES ('" + table + "', OLD." + ROW_ID_COLUMN + "); END");
+    }
+
+    /**
+     * Create table and its indexes in destination as they are in source
+     */
+    private void createDestTable(String table) {
+        Cursor cursor = mSourceDB.rawQuery("SELECT sql FROM sqlite_master WHERE tbl_name = ?" +
+                " AND type IN ('table', 'index') AND sql IS NOT NULL ORDER BY type DESC", new String[]{table});
+        while (cursor.moveToNext()) {
+            mDestDB.execSQL(cursor.getString(0));
+        }
+        cursor.close();
+    }
+
+    /**
+     * Copy next rows of the table being copied in row id order
+     */
+    private void copyTableStep() {
+        String table = mTablesToCopy.getFirst();
+        Cursor cursor = mSourceDB.rawQuery("SELECT * FROM " + table + " WHERE " + ROW_ID_COLUMN +
+                " > " + mLastRowId + " ORDER BY " + ROW_ID_COLUMN + " LIMIT " + mStepRows, null);
+        int count = 0;
+        mDestDB.beginTransaction();
+        try {
+            int rowIdIndex = cursor.getColumnIndex(ROW_ID_COLUMN);
+            while (cursor.moveToNext()) {
+                mDestDB.insertWithOnConflict(table, null, Utility.cursorRowToContentValues(cursor),
+                        SQLiteDatabase.CONFLICT_REPLACE);
+                mLastRowId = cursor.getLong(rowIdIndex);
+                count++;
+            }
+            mDestDB.setTransactionSuccessful();
+        } finally {
+            mDestDB.endTransaction();
+            cursor.close();
+        }
+        mDone += count;
+        if (count < mStepRows) {
+            mTablesToCopy.removeFirst();
+            mLastRowId = Long.MIN_VALUE;
+            if (mTablesToCopy.isEmpty()) {
+                startReplay();
+            }
+        }
+    }
+
+    /**
+     * Note last change logged so far, replay steps stop once they pass it
+     */
+    private void startReplay() {
+        mTargetSeq = DatabaseUtils.longForQuery(mSourceDB,
+                "SELECT IFNULL(MAX(seq), 0) FROM " + CHANGE_LOG_TABLE, null);
+        mTotal = Math.max(mTotal, mDone + mTargetSeq - mReplaySeq);
+        mState = STATE_REPLAY;
+    }
+
+    /**
+     * Copy current version of next rows from the change log, deleting rows which no longer exist
+     *
+     * @return number of changes replayed
+     */
+    private int replayChanges() {
+        Cursor changes = mSourceDB.rawQuery("SELECT seq, tbl, row_id FROM " + CHANGE_LOG_TABLE +
+                " WHERE seq > " + mReplaySeq + " ORDER BY seq LIMIT " + mStepRows, null);
+        int count = 0;
+        mDestDB.beginTransaction();
+        try {
+            while (changes.moveToNext()) {
+                String table = changes.getString(1);
+                if (mTables.contains(table)) {
+                    copyRow(table, changes.getString(2));
+                }
+                mReplaySeq = changes.getLong(0);
+                count++;
+            }
+            mDestDB.setTransactionSuccessful();
+        } finally {
+            mDestDB.endTransaction();
+            changes.close();
+        }
+        mDone += count;
+        return count;
+    }
+
+    private void copyRow(String table, String rowId) {
+        String[] args = {rowId};
+        Cursor cursor = mSourceDB.rawQuery("SELECT * FROM " + table + " WHERE " + ROW_ID_COLUMN + " = ?", args);
+        if (cursor.moveToFirst()) {
+            mDestDB.insertWithOnConflict(table, null, Utility.cursorRowToContentValues(cursor),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        } else {
+            mDestDB.delete(table, ROW_ID_COLUMN + " = ?", args);
+        }
+        cursor.close();
+    }
+
+    /**
+     * Replay remaining changes while holding the write lock of source, mark destination
+     * as complete and clear the change log
+     */
+    private void finish() {
+        mSourceDB.beginTransactionNonExclusive();
+        try {
+            while (replayChanges() == mStepRows) {
+                // Writers are blocked, remaining changes are bounded
+            }
+            mDestDB.beginTransaction();
+            try {
+                writeMeta(mDestDB, META_LAST_SEQ, String.valueOf(mReplaySeq));
+                mDestDB.delete(BACKUP_META_TABLE, "key = ?", new String[]{META_IN_PROGRESS});
+                mDestDB.setTransactionSuccessful();
+            } finally {
+                mDestDB.endTransaction();
+            }
+            sRunningBackups.remove(this);
+            long pruneSeq = mReplaySeq;
+            for (Backup backup :
+                    sRunningBackups) {
+                if (backup.mSource == mSource) {
+                    pruneSeq = Math.min(pruneSeq, backup.mReplaySeq);
+                }
+            }
+            mSourceDB.delete(CHANGE_LOG_TABLE, "seq <= ?", new String[]{String.valueOf(pruneSeq)});
+            if (pruneSeq > Long.parseLong(readMeta(mSourceDB, META_PRUNED_SEQ, "0"))) {
+                writeMeta(mSourceDB, META_PRUNED_SEQ, String.valueOf(pruneSeq));
+            }
+            mSourceDB.setTransactionSuccessful();
+        } finally {
+            mSourceDB.endTransaction();
+        }
+        mState = STATE_DONE;
+    }
+
+    private static void createMetaTable(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("CREATE TABLE IF NOT EXISTS " + BACKUP_META_TABLE +
+                " (key TEXT PRIMARY KEY, value TEXT)");
+    }
+
+    private static String readMeta(SQLiteDatabase sqLiteDatabase, String key, String defaultValue) {
+        Cursor cursor = sqLiteDatabase.rawQuery("SELECT value FROM " + BACKUP_META_TABLE +
+                " WHERE key = ?", new String[]{key});
+        String value = cursor.moveToFirst() ? cursor.getString(0) : defaultValue;
+        cursor.close();
+        return value;
+    }
+
+    private static void writeMeta(SQLiteDatabase sqLiteDatabase, String key, String value) {
+        ContentValues values = new ContentValues();
+        values.put("key", key);
+        values.put("value", value);
+        sqLiteDatabase.insertWithOnConflict(BACKUP_META_TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Stop recording changes for backups and remove the change log.
+     * <p>
+     * Next backup after this is a full copy.
+     * </p>
+     *
+     * @param dataBase Database backed up earlier
+     */
+    public static void dropChangeLog(DataBase dataBase) {
+        SQLiteDatabase sqLiteDatabase = dataBase.getWritableDatabase();
+        sqLiteDatabase.beginTransactionNonExclusive();
+        try {
+            Cursor cursor = sqLiteDatabase.rawQuery("SELECT name FROM sqlite_master WHERE type = 'trigger'" +
+                    " AND name LIKE ? ESCAPE '\\'", new String[]{INTERNAL_TABLE_PREFIX.replace("_", "\\_") + "%"});
+            List<String> triggers = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                triggers.add(cursor.getString(0));
+            }
+            cursor.close();
+            for (String trigger :
+                    triggers) {
+                sqLiteDatabase.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+            }
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + CHANGE_LOG_TABLE);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + BACKUP_META_TABLE);
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+    }
+}
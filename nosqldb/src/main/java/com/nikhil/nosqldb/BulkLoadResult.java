@@ -0,0 +1,84 @@
+package com.nikhil.nosqldb;
+
+import java.util.List;
+
+/**
+ * Result of a committed {@link BulkLoadSession}.
+ *
+ * @author Nikhil
+ */
+public class BulkLoadResult {
+    private long mInsertedCount;
+    private List<Conflict> mConflicts;
+
+    BulkLoadResult(long insertedCount, List<Conflict> conflicts) {
+        mInsertedCount = insertedCount;
+        mConflicts = conflicts;
+    }
+
+    /**
+     * @return number of rows kept in the objectstore
+     */
+    public long getInsertedCount() {
+        return mInsertedCount;
+    }
+
+    /**
+     * @return keys loaded more than once for an index, duplicate rows were dropped
+     */
+    public List<Conflict> getConflicts() {
+        return mConflicts;
+    }
+
+    /**
+     * @return true if any row was dropped because of duplicate key
+     */
+    public boolean hasConflicts() {
+        return !mConflicts.isEmpty();
+    }
+
+    /**
+     * Duplicate key of a unique index.
+     * <p>
+     * Row inserted first (or already present before the session) is kept,
+     * later rows with the same key are dropped.
+     * </p>
+     */
+    public static class Conflict {
+        private String mIndexName;
+        private List<String> mKey;
+        private long mDroppedCount;
+
+        Conflict(String indexName, List<String> key, long droppedCount) {
+            mIndexName = indexName;
+            mKey = key;
+            mDroppedCount = droppedCount;
+        }
+
+        /**
+         * @return name of the index
+         */
+        public String getIndexName() {
+            return mIndexName;
+        }
+
+        /**
+         * @return values of index columns, in order of the columns of the index
+         */
+        public List<String> getKey() {
+            return mKey;
+        }
+
+        /**
+         * @return number of rows dropped for this key
+         */
+        public long getDroppedCount() {
+            return mDroppedCount;
+        }
+
+        @Override
+        public String toString() {
+            return mIndexName + mKey + " dropped " + mDroppedCount;
+        }
+    }
+}
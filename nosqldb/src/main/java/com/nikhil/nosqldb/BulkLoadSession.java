@@ -0,0 +1,342 @@
+package com.nikhil.nosqldb;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.nikhil.nosqldb.constant.Constant;
+import com.nikhil.nosqldb.utils.Utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.nikhil.nosqldb.constant.Constant.BULK_LOAD_TABLE;
+
+/**
+ * Session to insert large number of rows into an ObjectStore.
+ * <p>
+ * While the session is active, unique indexes of the ObjectStore are dropped,
+ * synchronous writes are turned off and rows are inserted in large transactions.
+ * {@link #commit()} rebuilds the indexes in one pass, dropping rows of the session with duplicate keys,
+ * and {@link #abort()} removes every row inserted by the session.
+ * Both restore the normal settings. If {@link #commit()} fails the session stays active
+ * and can be aborted.
+ * </p>
+ * <p>
+ * Row id ranges of committed batches are recorded in the database, so rows written by other
+ * writers during the session are never removed. A row of the session whose key is also used
+ * by another writer's row is dropped on commit. If the app dies during a session,
+ * next {@link ObjectStore#init()} drops rows of the session with duplicate keys
+ * and recreates the indexes.
+ * </p>
+ * <p class="caution">
+ * Use a session from a single thread, only one session per ObjectStore can be active in a process.
+ * Other writers wait while a batch is being inserted. Unique keys are not checked until commit,
+ * so if other writers insert duplicate keys of each other during the session, commit fails.
+ * </p>
+ *
+ * @author Nikhil
+ * @see ObjectStore#beginBulkLoad()
+ */
+public class BulkLoadSession {
+    public static final int DEFAULT_BATCH_SIZE = 50000;
+    private static final Object sLock = new Object();
+    private static final Set<BulkLoadSession> sActiveSessions =
+            Collections.newSetFromMap(new ConcurrentHashMap<BulkLoadSession, Boolean>());
+
+    private ObjectStore mObjectStore;
+    private SQLiteDatabase mSQLiteDatabase;
+    private String mOSName;
+    private long mSynchronous;
+    private int mBatchSize = DEFAULT_BATCH_SIZE;
+    private long mCount = 0;
+    private long mBatchCount = 0;
+    private long mBatchFirstRowId = -1;
+    private long mBatchLastRowId = -1;
+    private long mRangeLastRowId = -1;
+    private ProgressListener mListener;
+    private boolean mIsActive = true;
+    private boolean mIsInBatch = false;
+
+    BulkLoadSession(ObjectStore objectStore) throws Exception {
+        mObjectStore = objectStore;
+        mOSName = objectStore.getName();
+        mSQLiteDatabase = objectStore.getDataBase().getWritableDatabase();
+        synchronized (sLock) {
+            if (isActive(objectStore)) {
+                throw new Exception("Bulk load session is already active on " + mOSName);
+            }
+            // Finish a session the app died in before starting a new one
+            restoreIndexes(objectStore);
+            // Safety level can't be changed inside a transaction
+            mSynchronous = DatabaseUtils.longForQuery(mSQLiteDatabase, "PRAGMA synchronous", null);
+            mSQLiteDatabase.execSQL("PRAGMA synchronous = OFF");
+            try {
+                mSQLiteDatabase.beginTransactionNonExclusive();
+                try {
+                    mSQLiteDatabase.execSQL("CREATE TABLE IF NOT EXISTS " + BULK_LOAD_TABLE +
+                            " (os_name TEXT NOT NULL, first_row_id INTEGER NOT NULL, last_row_id INTEGER NOT NULL)");
+                    // Empty range marks the session as started
+                    insertRange(0, -1);
+                    for (String indexName :
+                            objectStore.getIndexCols().keySet()) {
+                        mSQLiteDatabase.execSQL("DROP INDEX IF EXISTS " + indexName);
+                    }
+                    mSQLiteDatabase.setTransactionSuccessful();
+                } finally {
+                    mSQLiteDatabase.endTransaction();
+                }
+            } catch (RuntimeException e) {
+                restoreSettings();
+                throw e;
+            }
+            sActiveSessions.add(this);
+        }
+    }
+
+    /**
+     * Set number of rows inserted per transaction
+     *
+     * @param batchSize Number of rows, default is {@link #DEFAULT_BATCH_SIZE}
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive, got " + batchSize);
+        }
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * @param listener Called after every batch with number of rows inserted, can be null
+     */
+    public void setProgressListener(ProgressListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Add entry/row into the objectstore
+     *
+     * @param values row to be added
+     * @throws Exception
+     */
+    public void put(HashMap<String, String> values) throws Exception {
+        if (!mIsActive) {
+            throw new Exception("Bulk load session is not active");
+        }
+        if (!mIsInBatch) {
+            mSQLiteDatabase.beginTransactionNonExclusive();
+            mIsInBatch = true;
+        }
+        long rowId = mSQLiteDatabase.insert(mOSName, null, mObjectStore.toContentValues(values));
+        if (rowId != -1) {
+            mCount++;
+            // Batch holds the write lock, so rows between its first and last row id are its own
+            if (mBatchFirstRowId == -1) {
+                mBatchFirstRowId = rowId;
+            }
+            mBatchLastRowId = rowId;
+        }
+        if (++mBatchCount % mBatchSize == 0) {
+            endBatch();
+            if (mListener != null) {
+                mListener.onProgress(mCount, -1);
+            }
+        }
+    }
+
+    private void endBatch() {
+        if (mIsInBatch) {
+            if (mBatchFirstRowId != -1) {
+                recordBatch();
+            }
+            mIsInBatch = false;
+            mSQLiteDatabase.setTransactionSuccessful();
+            mSQLiteDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Record row id range of current batch in the same transaction as its rows,
+     * extending range of previous batch if no other writer inserted rows in between
+     */
+    private void recordBatch() {
+        if (mRangeLastRowId != -1 && mBatchFirstRowId == mRangeLastRowId + 1) {
+            ContentValues values = new ContentValues();
+            values.put("last_row_id", mBatchLastRowId);
+            mSQLiteDatabase.update(BULK_LOAD_TABLE, values, "os_name = ? AND last_row_id = ?",
+                    new String[]{mOSName, String.valueOf(mRangeLastRowId)});
+        } else {
+            insertRange(mBatchFirstRowId, mBatchLastRowId);
+        }
+        mRangeLastRowId = mBatchLastRowId;
+        mBatchFirstRowId = -1;
+    }
+
+    private void insertRange(long firstRowId, long lastRowId) {
+        ContentValues values = new ContentValues();
+        values.put("os_name", mOSName);
+        values.put("first_row_id", firstRowId);
+        values.put("last_row_id", lastRowId);
+        mSQLiteDatabase.insertOrThrow(BULK_LOAD_TABLE, null, values);
+    }
+
+    /**
+     * Commit inserted rows and rebuild indexes.
+     * <p>
+     * For every index, a row of the session is dropped if a row written outside the session
+     * or an earlier row of the session has the same key. Dropped rows are reported in the result.
+     * </p>
+     *
+     * @return {@link BulkLoadResult} with number of rows kept and duplicate keys
+     * @throws Exception
+     */
+    public BulkLoadResult commit() throws Exception {
+        if (!mIsActive) {
+            throw new Exception("Bulk load session is not active");
+        }
+        endBatch();
+        if (mListener != null) {
+            mListener.onProgress(mCount, mCount);
+        }
+
+        List<BulkLoadResult.Conflict> conflicts = new ArrayList<>();
+        long droppedCount = 0;
+        mSQLiteDatabase.beginTransactionNonExclusive();
+        try {
+            for (Map.Entry<String, List<String>> index :
+                    mObjectStore.getIndexCols().entrySet()) {
+                droppedCount += mObjectStore.removeDuplicates(index.getKey(), index.getValue(),
+                        getSessionRows(mOSName), conflicts);
+            }
+            mObjectStore.createIndexes();
+            clearRanges(mSQLiteDatabase, mOSName);
+            mSQLiteDatabase.setTransactionSuccessful();
+        } finally {
+            mSQLiteDatabase.endTransaction();
+        }
+        mIsActive = false;
+        sActiveSessions.remove(this);
+        restoreSettings();
+        return new BulkLoadResult(mCount - droppedCount, conflicts);
+    }
+
+    /**
+     * Remove every row inserted by this session and restore indexes and settings.
+     * <p>
+     * Rows written by other writers during the session are kept.
+     * </p>
+     *
+     * @throws Exception
+     */
+    public void abort() throws Exception {
+        if (!mIsActive) {
+            return;
+        }
+        mIsActive = false;
+        try {
+            if (mIsInBatch) {
+                // Rows of unfinished batch are rolled back along with their range
+                mIsInBatch = false;
+                mBatchFirstRowId = -1;
+                mSQLiteDatabase.endTransaction();
+            }
+            mSQLiteDatabase.beginTransactionNonExclusive();
+            try {
+                mSQLiteDatabase.delete(mOSName, getSessionRows(mOSName), null);
+                mObjectStore.createIndexes();
+                clearRanges(mSQLiteDatabase, mOSName);
+                mSQLiteDatabase.setTransactionSuccessful();
+            } finally {
+                mSQLiteDatabase.endTransaction();
+            }
+        } finally {
+            sActiveSessions.remove(this);
+            restoreSettings();
+        }
+    }
+
+    /**
+     * @return true until the session is committed or aborted
+     */
+    public boolean isActive() {
+        return mIsActive;
+    }
+
+    private void restoreSettings() {
+        mSQLiteDatabase.execSQL("PRAGMA synchronous = " + mSynchronous);
+    }
+
+    /**
+     * Create indexes of the ObjectStore which don't exist, unless a session on it is active in this process.
+     * <p>
+     * If the app died during a session, rows of that session with duplicate keys are dropped first.
+     * Otherwise rows are never dropped, and an index fails to be created if rows have duplicate keys.
+     * </p>
+     *
+     * @param objectStore ObjectStore being opened
+     * @throws Exception
+     */
+    static void restoreIndexes(ObjectStore objectStore) throws Exception {
+        synchronized (sLock) {
+            if (isActive(objectStore)) {
+                return;
+            }
+            String osName = objectStore.getName();
+            SQLiteDatabase sqLiteDatabase = objectStore.getDataBase().getWritableDatabase();
+            sqLiteDatabase.beginTransactionNonExclusive();
+            try {
+                if (Utility.isOSExist(objectStore.getDataBase(), BULK_LOAD_TABLE) &&
+                        DatabaseUtils.queryNumEntries(sqLiteDatabase, BULK_LOAD_TABLE, "os_name = ?",
+                                new String[]{osName}) > 0) {
+                    for (Map.Entry<String, List<String>> index :
+                            objectStore.getIndexCols().entrySet()) {
+                        long droppedCount = objectStore.removeDuplicates(index.getKey(), index.getValue(),
+                                getSessionRows(osName), new ArrayList<BulkLoadResult.Conflict>());
+                        Log.v("Index Recovery", "Dropped " + droppedCount + " duplicate rows for " + index.getKey());
+                    }
+                    clearRanges(sqLiteDatabase, osName);
+                }
+                objectStore.createIndexes();
+                sqLiteDatabase.setTransactionSuccessful();
+            } finally {
+                sqLiteDatabase.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * @return true if a session on the ObjectStore is active in this process
+     */
+    private static boolean isActive(ObjectStore objectStore) {
+        SQLiteDatabase sqLiteDatabase = objectStore.getDataBase().getWritableDatabase();
+        for (BulkLoadSession session :
+                sActiveSessions) {
+            if (!session.mSQLiteDatabase.isOpen()) {
+                // Database was closed without finishing the session, it can't continue
+                sActiveSessions.remove(session);
+            } else if (session.mSQLiteDatabase == sqLiteDatabase && session.mOSName.equals(objectStore.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return SQL condition matching rows of the ObjectStore inserted by a session
+     */
+    private static String getSessionRows(String osName) {
+        return "EXISTS (SELECT 1 FROM " + BULK_LOAD_TABLE + " WHERE os_name = " +
+                DatabaseUtils.sqlEscapeString(osName) + " AND " + osName + "." + Constant.ROW_ID_COLUMN +
+                " BETWEEN first_row_id AND last_row_id)";
+    }
+
+    private static void clearRanges(SQLiteDatabase sqLiteDatabase, String osName) {
+        sqLiteDatabase.delete(BULK_LOAD_TABLE, "os_name = ?", new String[]{osName});
+    }
+}
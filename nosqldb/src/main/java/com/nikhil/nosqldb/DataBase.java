@@ -4,24 +4,49 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import java.io.File;
+
 /**
  * Main class to create and alter database
+ * <p>
+ * Concurrency model: DataBase and its ObjectStores can be shared between threads.
+ * Write-ahead logging (WAL) is enabled by default, so all writes go through a single
+ * writer connection while queries from other threads run in parallel on a pool of
+ * reader connections managed by {@link SQLiteDatabase}, reading the last committed data.
+ * Queries made inside a write transaction run on the writer connection.
+ * Without WAL every read and write is serialized on one connection.
+ * </p>
+ * <p>
+ * {@link OSCursor} is not thread safe, use each cursor from a single thread.
+ * </p>
  *
  * @author Nikhil
  */
 public class DataBase {
     private final int DB_Version = 1;
-    private boolean IsOpen = false;
+    private volatile boolean IsOpen = false;
     private SQLiteOpenHelper mSQLiteHelper;
     private String mDBName;
 
     /**
-     * Create or Open database
+     * Create or Open database with write-ahead logging enabled
      *
      * @param dbName  Name of the Database
      * @param context
      */
     public DataBase(String dbName, Context context) {
+        this(dbName, context, true);
+    }
+
+    /**
+     * Create or Open database
+     *
+     * @param dbName                  Name of the Database
+     * @param context
+     * @param enableWriteAheadLogging True to let queries run in parallel with writes,
+     *                                see {@link SQLiteDatabase#enableWriteAheadLogging()}
+     */
+    public DataBase(String dbName, Context context, boolean enableWriteAheadLogging) {
         mDBName = dbName;
         mSQLiteHelper = new SQLiteOpenHelper(context, dbName, null, DB_Version) {
 
@@ -40,6 +65,7 @@ public class DataBase {
                 DataBase.this.onOpen();
             }
         };
+        mSQLiteHelper.setWriteAheadLoggingEnabled(enableWriteAheadLogging);
         mSQLiteHelper.getReadableDatabase();
     }
 
@@ -92,6 +118,16 @@ public class DataBase {
         return mSQLiteHelper.getReadableDatabase();
     }
 
+    /**
+     * Returns true if write-ahead logging is enabled, i.e. queries can run
+     * in parallel with a writer.
+     *
+     * @return True if write-ahead logging is enabled
+     */
+    public boolean isWriteAheadLoggingEnabled() {
+        return mSQLiteHelper.getReadableDatabase().isWriteAheadLoggingEnabled();
+    }
+
     /**
      * Create ObjectStore instance.
      * <p>
@@ -104,6 +140,19 @@ public class DataBase {
         return new ObjectStore(osName, this);
     }
 
+    /**
+     * Create online backup of this database.
+     * <p>
+     * Database stays open while backup is running, see {@link Backup} for details.
+     * </p>
+     *
+     * @param destination File to write backup to, updated incrementally if it has a previous backup
+     * @return {@link Backup} to run or step through
+     */
+    public Backup backup(File destination) {
+        return new Backup(this, destination);
+    }
+
     /**
      * Close any open database object
      */
@@ -0,0 +1,30 @@
+package com.nikhil.nosqldb;
+
+/**
+ * Result of {@link ObjectStore#importJson(java.io.InputStream, int, ProgressListener)}.
+ *
+ * @author Nikhil
+ */
+public class ImportResult {
+    private long mImportedCount;
+    private long mSkippedCount;
+
+    ImportResult(long importedCount, long skippedCount) {
+        mImportedCount = importedCount;
+        mSkippedCount = skippedCount;
+    }
+
+    /**
+     * @return number of rows inserted into the objectstore
+     */
+    public long getImportedCount() {
+        return mImportedCount;
+    }
+
+    /**
+     * @return number of rows read but rejected by the database, e.g. for a duplicate key
+     */
+    public long getSkippedCount() {
+        return mSkippedCount;
+    }
+}
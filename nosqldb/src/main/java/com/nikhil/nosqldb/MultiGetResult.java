@@ -0,0 +1,51 @@
+package com.nikhil.nosqldb;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Rows fetched by {@link ObjectStore#getMany(String, java.util.Collection)}.
+ *
+ * @author Nikhil
+ */
+public class MultiGetResult {
+    private LinkedHashMap<String, HashMap<String, String>> mRows;
+    private List<String> mMissingKeys;
+
+    MultiGetResult(LinkedHashMap<String, HashMap<String, String>> rows, List<String> missingKeys) {
+        mRows = rows;
+        mMissingKeys = missingKeys;
+    }
+
+    /**
+     * @return found rows by key, in order of requested keys
+     */
+    public LinkedHashMap<String, HashMap<String, String>> getRows() {
+        return mRows;
+    }
+
+    /**
+     * Return row for the key, null if it wasn't found
+     *
+     * @param key Value of index column
+     * @return row as HashMap of column, value as key, value
+     */
+    public HashMap<String, String> getRow(String key) {
+        return mRows.get(key);
+    }
+
+    /**
+     * @return requested keys having no row, in order of requested keys
+     */
+    public List<String> getMissingKeys() {
+        return mMissingKeys;
+    }
+
+    /**
+     * @return true if a row was found for every requested key
+     */
+    public boolean isComplete() {
+        return mMissingKeys.isEmpty();
+    }
+}
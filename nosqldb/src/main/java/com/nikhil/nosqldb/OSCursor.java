@@ -11,6 +11,7 @@ import android.text.TextUtils;
 
 import com.google.gson.Gson;
 import com.nikhil.nosqldb.constant.Constant;
+import com.nikhil.nosqldb.utils.PayloadCodec;
 import com.nikhil.nosqldb.utils.Utility;
 
 import java.util.ArrayList;
@@ -23,16 +24,33 @@ import java.util.HashMap;
  * OSCursor are not required to be synchronized so code using a OSCursor from multiple
  * threads should perform its own synchronization when using the OSCursor.
  * </p>
+ * <p>
+ * Extra data of a row is decoded, and decompressed if required, only when it is accessed.
+ * </p>
  *
  * @author Nikhil
  */
 public class OSCursor {
     private Cursor mCursor;
     private HashMap<String, String> mRowData;
+    private HashMap<String, String> mExtraData = new HashMap<>();
+    private boolean mIsExtraDataFetched = false;
+    private int mExtraDataIndex;
+    private PayloadCodec mPayloadCodec;
 
     public OSCursor(Cursor cursor) {
+        this(cursor, null);
+    }
+
+    /**
+     * @param cursor       Cursor on the objectstore
+     * @param payloadCodec Codec used to compress extra data, null if compression is disabled
+     */
+    public OSCursor(Cursor cursor, PayloadCodec payloadCodec) {
         mCursor = cursor;
+        mPayloadCodec = payloadCodec;
         mRowData = new HashMap<>(mCursor.getColumnCount());
+        mExtraDataIndex = mCursor.getColumnIndex(Constant.EXTRA_DATA_COLUMN);
     }
 
     /**
@@ -169,11 +187,8 @@ public class OSCursor {
      */
     public String[] getColumnNames() {
         ArrayList<String> cols = Utility.toArrayList(mCursor.getColumnNames());
-        String extraData = mCursor.getString(mCursor.getColumnIndex(Constant.EXTRA_DATA_COLUMN));
-        if (!TextUtils.isEmpty(extraData)) {
-            HashMap<String, String> data = new Gson().fromJson(extraData, HashMap.class);
-            cols.addAll(data.keySet());
-        }
+        fetchExtraData();
+        cols.addAll(mExtraData.keySet());
         String[] colsArray = new String[cols.size()];
         return cols.toArray(colsArray);
     }
@@ -193,27 +208,50 @@ public class OSCursor {
 
     private void fetchRow() {
         mRowData.clear();
+        mExtraData.clear();
+        mIsExtraDataFetched = false;
 
         String[] cols = mCursor.getColumnNames();
-        for (String col :
-                cols) {
-            String value = mCursor.getString(mCursor.getColumnIndex(col));
+        for (int i = 0; i < cols.length; i++) {
+            if (i == mExtraDataIndex) {
+                continue;
+            }
+            String value = mCursor.getString(i);
             if (!TextUtils.isEmpty(value)) {
-                if (!col.equalsIgnoreCase(Constant.EXTRA_DATA_COLUMN)) {
-                    mRowData.put(col, value);
-                } else {
-                    mRowData.putAll(new Gson().fromJson(value, HashMap.class));
-                }
+                mRowData.put(cols[i], value);
             }
         }
     }
 
+    /**
+     * Decode extra data of current row, decompressing it if it was stored compressed
+     */
+    private void fetchExtraData() {
+        if (mIsExtraDataFetched || mExtraDataIndex < 0) {
+            return;
+        }
+        mIsExtraDataFetched = true;
+        String extraData;
+        if (mCursor.getType(mExtraDataIndex) == Cursor.FIELD_TYPE_BLOB) {
+            byte[] blob = mCursor.getBlob(mExtraDataIndex);
+            extraData = mPayloadCodec != null ? mPayloadCodec.decompress(blob)
+                    : PayloadCodec.decompress(blob, (byte[]) null);
+        } else {
+            extraData = mCursor.getString(mExtraDataIndex);
+        }
+        if (!TextUtils.isEmpty(extraData)) {
+            mExtraData.putAll(new Gson().fromJson(extraData, HashMap.class));
+            mRowData.putAll(mExtraData);
+        }
+    }
+
     /**
      * Return current row as HashMap of column, value as key, value
      *
      * @return current row as HashMap of column, value as key, value
      */
     public HashMap<String, String> getRow() {
+        fetchExtraData();
         return mRowData;
     }
 
@@ -227,6 +265,9 @@ public class OSCursor {
     public String getValue(String columnKey) {
         if (mRowData.containsKey(columnKey))
             return mRowData.get(columnKey);
+        fetchExtraData();
+        if (mExtraData.containsKey(columnKey))
+            return mExtraData.get(columnKey);
         return null;
     }
 
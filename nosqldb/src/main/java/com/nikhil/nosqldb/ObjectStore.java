@@ -3,33 +3,67 @@ package com.nikhil.nosqldb;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.nikhil.nosqldb.constant.Constant;
+import com.nikhil.nosqldb.utils.PayloadCodec;
 import com.nikhil.nosqldb.utils.Utility;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.nikhil.nosqldb.constant.Constant.EXTRA_DATA_COLUMN;
 
 /**
  * Class to control read/write operation of ObjectStore on database
+ * <p>
+ * ObjectStore is thread safe once {@link #init()} returns, rows can be put and
+ * queried from multiple threads. See {@link DataBase} for how concurrent reads and writes
+ * are executed. Indexes must be created before {@link #init()}.
+ * </p>
  *
  * @author Nikhil
  */
 
 public class ObjectStore {
-    private DataBase mDataBase = null;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /**
+     * Maximum number of ? parameters bound in one query, default limit of older SQLite versions
+     */
+    private static final int MAX_QUERY_ARGS = 999;
+    private volatile DataBase mDataBase = null;
     private ConcurrentHashMap<String, List<String>> mIndexCols = new ConcurrentHashMap<>();
-    private HashSet<String> mCols = new HashSet<>();
+    private Set<String> mCols = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private String mOSName;
-    private boolean mIsReadOnly = false;
+    private volatile boolean mIsReadOnly = false;
+    private volatile PayloadCodec mPayloadCodec = null;
+    private ConcurrentHashMap<Long, byte[]> mPayloadDictionaries = new ConcurrentHashMap<>();
 
     /**
      * @param osName Name of ObjectStore in database
@@ -54,9 +88,19 @@ public class ObjectStore {
      * <p>
      * Call this once {@link DataBase} is open
      */
-    public void init() {
+    public synchronized void init() {
         if (Utility.isOSExist(mDataBase, mOSName)) {
             mCols.addAll(Utility.getOSCols(mDataBase, mOSName));
+            if (!mIsReadOnly) {
+                try {
+                    BulkLoadSession.restoreIndexes(this);
+                } catch (SQLiteException e) {
+                    // Rows with duplicate keys of a new index are never dropped silently
+                    throw e;
+                } catch (Exception e) {
+                    Log.v("Index Creation", e.getMessage());
+                }
+            }
         } else {
             try {
                 createOS();
@@ -81,6 +125,15 @@ public class ObjectStore {
         }
         create_os_cmd.append(")");
         executeSQL(create_os_cmd.toString());
+        createIndexes();
+    }
+
+    /**
+     * Create indexes specified via {@link #createIndex(String, ArrayList)} if they don't exist
+     *
+     * @throws Exception
+     */
+    void createIndexes() throws Exception {
         for (String key :
                 mIndexCols.keySet()) {
             String create_index_cmd = "CREATE UNIQUE INDEX IF NOT EXISTS " + key +
@@ -90,6 +143,43 @@ public class ObjectStore {
         }
     }
 
+    /**
+     * Drop rows of a {@link BulkLoadSession} having the same key for the index as a row
+     * written outside the session, or as an earlier row of the session
+     *
+     * @param indexName   Name of index
+     * @param indexCols   Columns of index
+     * @param sessionRows SQL condition matching rows of the session, only these are dropped
+     * @param conflicts   Duplicate keys are added to it
+     * @return number of rows dropped
+     */
+    long removeDuplicates(String indexName, List<String> indexCols, String sessionRows,
+                          List<BulkLoadResult.Conflict> conflicts) {
+        SQLiteDatabase sqLiteDatabase = mDataBase.getWritableDatabase();
+        String cols = TextUtils.join(",", indexCols);
+        String notNull = TextUtils.join(" IS NOT NULL AND ", indexCols) + " IS NOT NULL";
+        String rows = "(SELECT " + Constant.ROW_ID_COLUMN + ", " + cols + ", " + sessionRows +
+                " AS in_session FROM " + mOSName + " WHERE " + notNull + ")";
+        Cursor cursor = sqLiteDatabase.rawQuery("SELECT " + cols + ", SUM(in_session) - (SUM(in_session) = COUNT(*))" +
+                " FROM " + rows + " GROUP BY " + cols + " HAVING COUNT(*) > 1 AND SUM(in_session) > 0", null);
+        if (cursor.getCount() == 0) {
+            cursor.close();
+            return 0;
+        }
+        while (cursor.moveToNext()) {
+            List<String> key = new ArrayList<>(indexCols.size());
+            for (int i = 0; i < indexCols.size(); i++) {
+                key.add(cursor.getString(i));
+            }
+            conflicts.add(new BulkLoadResult.Conflict(indexName, key, cursor.getLong(indexCols.size())));
+        }
+        cursor.close();
+        // Row outside the session keeps the key if there is one, else the first row of the session
+        return sqLiteDatabase.delete(mOSName, notNull + " AND " + sessionRows + " AND " + Constant.ROW_ID_COLUMN +
+                " NOT IN (SELECT IFNULL(MIN(CASE WHEN in_session = 0 THEN " + Constant.ROW_ID_COLUMN +
+                " END), MIN(" + Constant.ROW_ID_COLUMN + ")) FROM " + rows + " GROUP BY " + cols + ")", null);
+    }
+
     /**
      * Execute SQLite command
      *
@@ -134,6 +224,38 @@ public class ObjectStore {
         mCols.addAll(indexCols);
     }
 
+    /**
+     * Start loading rows in bulk.
+     * <p>
+     * Indexes of this ObjectStore are dropped until the session is committed,
+     * see {@link BulkLoadSession} for details.
+     * </p>
+     *
+     * @return {@link BulkLoadSession} to insert rows
+     * @throws Exception
+     */
+    public BulkLoadSession beginBulkLoad() throws Exception {
+        if (mIsReadOnly) {
+            throw new Exception("Trying to write on readonly database");
+        }
+        return new BulkLoadSession(this);
+    }
+
+    /**
+     * @return Name of this ObjectStore
+     */
+    public String getName() {
+        return mOSName;
+    }
+
+    DataBase getDataBase() {
+        return mDataBase;
+    }
+
+    Map<String, List<String>> getIndexCols() {
+        return mIndexCols;
+    }
+
     /**
      * Open this ObjectStore in readonly mode
      *
@@ -143,6 +265,113 @@ public class ObjectStore {
         mIsReadOnly = isReadOnly;
     }
 
+    /**
+     * Compress extra data of rows whose extra data is at least threshold bytes.
+     * <p>
+     * Rows already stored are not rewritten, both compressed and uncompressed rows can be read.
+     * </p>
+     *
+     * @param threshold Minimum size of extra data in bytes to compress,
+     *                  e.g. {@link PayloadCodec#DEFAULT_THRESHOLD}
+     */
+    public void setPayloadCompression(int threshold) {
+        setPayloadCompression(threshold, null);
+    }
+
+    /**
+     * Compress extra data of rows whose extra data is at least threshold bytes
+     * using a preset dictionary.
+     * <p>
+     * Dictionaries set earlier are kept to read rows compressed with them.
+     * </p>
+     * <p class="caution">
+     * Dictionaries are not saved in the database, every dictionary used earlier must be set
+     * or added with {@link #addPayloadDictionary(byte[])} every time this ObjectStore is opened,
+     * rows compressed with a dictionary can't be read without it.
+     * </p>
+     *
+     * @param threshold  Minimum size of extra data in bytes to compress
+     * @param dictionary Preset dictionary, e.g. from {@link #trainPayloadDictionary(int, int)}
+     */
+    public void setPayloadCompression(int threshold, byte[] dictionary) {
+        mPayloadCodec = new PayloadCodec(threshold, dictionary, mPayloadDictionaries);
+    }
+
+    /**
+     * Add a dictionary used earlier to compress rows, to read those rows.
+     * <p>
+     * Rows record the id of their dictionary, see {@link PayloadCodec#getDictionaryId(byte[])}.
+     * </p>
+     *
+     * @param dictionary Preset dictionary set earlier with {@link #setPayloadCompression(int, byte[])}
+     */
+    public void addPayloadDictionary(byte[] dictionary) {
+        mPayloadDictionaries.put(PayloadCodec.getDictionaryId(dictionary), dictionary);
+        if (mPayloadCodec == null) {
+            mPayloadCodec = new PayloadCodec(Integer.MAX_VALUE, null, mPayloadDictionaries);
+        }
+    }
+
+    /**
+     * Store extra data of new rows uncompressed.
+     * <p>
+     * Dictionaries set earlier are still used to read rows compressed with them.
+     * </p>
+     */
+    public void disablePayloadCompression() {
+        if (mPayloadCodec != null) {
+            mPayloadCodec = new PayloadCodec(Integer.MAX_VALUE, null, mPayloadDictionaries);
+        }
+    }
+
+    /**
+     * Build a compression dictionary from extra data of rows already in this ObjectStore.
+     *
+     * @param sampleRows Number of rows to sample
+     * @param maxSize    Maximum size of dictionary in bytes, 16 to 32 KB works well
+     * @return dictionary to pass to {@link #setPayloadCompression(int, byte[])}
+     */
+    public byte[] trainPayloadDictionary(int sampleRows, int maxSize) {
+        ArrayList<String> samples = new ArrayList<>();
+        OSCursor cursor = query(EXTRA_DATA_COLUMN + " IS NOT NULL", null,
+                null, null, "RANDOM()", String.valueOf(sampleRows));
+        while (cursor.moveToNext()) {
+            HashMap<String, String> extraData = new HashMap<>(cursor.getRow());
+            extraData.keySet().removeAll(mCols);
+            extraData.remove(Constant.ROW_ID_COLUMN);
+            samples.add(new Gson().toJson(extraData));
+        }
+        cursor.close();
+        return PayloadCodec.buildDictionary(samples, maxSize);
+    }
+
+    /**
+     * Return size of extra data stored in this ObjectStore, before and after compression.
+     *
+     * @return {@link PayloadStats} of this ObjectStore
+     */
+    public PayloadStats getPayloadStats() {
+        SQLiteDatabase database = mDataBase.getReadableDatabase();
+        Cursor cursor = database.rawQuery("SELECT typeof(" + EXTRA_DATA_COLUMN + "), length(CAST(" +
+                EXTRA_DATA_COLUMN + " AS BLOB)), CASE WHEN typeof(" + EXTRA_DATA_COLUMN +
+                ") = 'blob' THEN substr(" + EXTRA_DATA_COLUMN + ", 1, " + PayloadCodec.HEADER_LENGTH +
+                ") END FROM " + mOSName + " WHERE " + EXTRA_DATA_COLUMN + " IS NOT NULL", null);
+        long rowCount = 0, compressedRowCount = 0, rawBytes = 0, storedBytes = 0;
+        while (cursor.moveToNext()) {
+            long storedLength = cursor.getLong(1);
+            rowCount++;
+            storedBytes += storedLength;
+            if ("blob".equals(cursor.getString(0))) {
+                compressedRowCount++;
+                rawBytes += PayloadCodec.getRawLength(cursor.getBlob(2));
+            } else {
+                rawBytes += storedLength;
+            }
+        }
+        cursor.close();
+        return new PayloadStats(rowCount, compressedRowCount, rawBytes, storedBytes);
+    }
+
     /**
      * Create this ObjectStore in specified database.
      * <p>
@@ -163,6 +392,16 @@ public class ObjectStore {
      * @throws Exception
      */
     public void put(HashMap<String, String> values) throws Exception {
+        put(toContentValues(values));
+    }
+
+    /**
+     * Split row into indexed columns and extra data
+     *
+     * @param values row to be added, indexed columns are removed from it
+     * @return ContentValues to insert
+     */
+    ContentValues toContentValues(HashMap<String, String> values) {
         ContentValues contentValues = new ContentValues();
         for (Object key :
                 values.keySet().toArray()) {
@@ -173,9 +412,187 @@ public class ObjectStore {
         }
         if (!values.isEmpty()) {
             String extraData = new Gson().toJson(values);
-            contentValues.put(EXTRA_DATA_COLUMN, extraData);
+            byte[] compressed = mPayloadCodec != null ? mPayloadCodec.compress(extraData) : null;
+            if (compressed != null) {
+                contentValues.put(EXTRA_DATA_COLUMN, compressed);
+            } else {
+                contentValues.put(EXTRA_DATA_COLUMN, extraData);
+            }
+        }
+        return contentValues;
+    }
+
+    /**
+     * Import rows from a JSON stream into the objectstore.
+     * <p>
+     * Stream can be either a JSON array of objects or newline delimited JSON objects (NDJSON).
+     * Rows are read one at a time and inserted in transactions of batchSize rows,
+     * so memory used doesn't depend on size of the stream.
+     * </p>
+     * <p>
+     * Nested objects and arrays are stored as their JSON string.
+     * Rows rejected by the database, e.g. for a duplicate key of an index, are skipped.
+     * If import fails, batches inserted before the failure stay in the objectstore.
+     * </p>
+     *
+     * @param inputStream Stream to read from, it is not closed
+     * @param batchSize   Number of rows inserted per transaction, e.g. {@link #DEFAULT_BATCH_SIZE}
+     * @param listener    Called after every batch with number of rows imported, can be null
+     * @return {@link ImportResult} with number of rows imported and skipped
+     * @throws Exception
+     */
+    public ImportResult importJson(InputStream inputStream, int batchSize, ProgressListener listener) throws Exception {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive, got " + batchSize);
+        }
+        if (mIsReadOnly) {
+            throw new Exception("Trying to write on readonly database");
+        }
+        JsonReader reader = new JsonReader(new BufferedReader(
+                new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+        reader.setLenient(true);
+        boolean isArray;
+        try {
+            isArray = reader.peek() == JsonToken.BEGIN_ARRAY;
+        } catch (EOFException e) {
+            // Empty stream
+            return new ImportResult(0, 0);
+        }
+        if (isArray) {
+            reader.beginArray();
+        }
+        SQLiteDatabase sqLiteDatabase = mDataBase.getWritableDatabase();
+        long readCount = 0;
+        long importedCount = 0;
+        boolean isInBatch = false;
+        try {
+            while (isArray ? reader.hasNext() : reader.peek() != JsonToken.END_DOCUMENT) {
+                if (!isInBatch) {
+                    sqLiteDatabase.beginTransactionNonExclusive();
+                    isInBatch = true;
+                }
+                if (sqLiteDatabase.insert(mOSName, null, toContentValues(readRow(reader))) != -1) {
+                    importedCount++;
+                }
+                readCount++;
+                if (readCount % batchSize == 0) {
+                    sqLiteDatabase.setTransactionSuccessful();
+                    isInBatch = false;
+                    sqLiteDatabase.endTransaction();
+                    // Listener runs outside the transaction, it may throw without leaving it open
+                    if (listener != null) {
+                        listener.onProgress(importedCount, -1);
+                    }
+                }
+            }
+            if (isInBatch) {
+                sqLiteDatabase.setTransactionSuccessful();
+                isInBatch = false;
+                sqLiteDatabase.endTransaction();
+            }
+        } finally {
+            if (isInBatch) {
+                sqLiteDatabase.endTransaction();
+            }
+        }
+        if (listener != null && readCount % batchSize != 0) {
+            listener.onProgress(importedCount, -1);
+        }
+        return new ImportResult(importedCount, readCount - importedCount);
+    }
+
+    /**
+     * Read a JSON object as row, converting every value to string
+     */
+    private HashMap<String, String> readRow(JsonReader reader) throws Exception {
+        HashMap<String, String> values = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            switch (reader.peek()) {
+                case NULL:
+                    reader.nextNull();
+                    break;
+                case BOOLEAN:
+                    values.put(key, String.valueOf(reader.nextBoolean()));
+                    break;
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    values.put(key, new JsonParser().parse(reader).toString());
+                    break;
+                default:
+                    values.put(key, reader.nextString());
+            }
+        }
+        reader.endObject();
+        return values;
+    }
+
+    /**
+     * Export rows of the objectstore as JSON to a stream.
+     * <p>
+     * Rows are read in row id order, {@link #DEFAULT_BATCH_SIZE} rows per query, and written
+     * one at a time, so memory used doesn't depend on number of rows and rows aren't counted upfront.
+     * Row id column is not exported,
+     * output can be imported back using {@link #importJson(InputStream, int, ProgressListener)}.
+     * </p>
+     *
+     * @param outputStream  Stream to write to, it is flushed but not closed
+     * @param selection     A filter declaring which rows to export, formatted as an
+     *                      SQL WHERE clause (excluding the WHERE itself). Passing null
+     *                      will export all rows.
+     * @param selectionArgs Values for ?s in selection
+     * @param asArray       True to write a JSON array, false to write one JSON object per line (NDJSON)
+     * @param listener      Called every {@link #DEFAULT_BATCH_SIZE} rows with number of rows exported,
+     *                      total is reported as -1. Can be null
+     * @return Number of rows exported
+     * @throws Exception
+     */
+    public long exportJson(OutputStream outputStream, String selection, String[] selectionArgs,
+                           boolean asArray, ProgressListener listener) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        Gson gson = new Gson();
+        long count = 0;
+        long lastRowId = Long.MIN_VALUE;
+        if (asArray) {
+            jsonWriter.beginArray();
+        }
+        int pageCount;
+        do {
+            String pageSelection = Constant.ROW_ID_COLUMN + " > " + lastRowId;
+            if (selection != null) {
+                pageSelection += " AND (" + selection + ")";
+            }
+            OSCursor cursor = query(pageSelection, selectionArgs, null, null,
+                    Constant.ROW_ID_COLUMN, String.valueOf(DEFAULT_BATCH_SIZE));
+            pageCount = 0;
+            try {
+                while (cursor.moveToNext()) {
+                    HashMap<String, String> row = cursor.getRow();
+                    lastRowId = Long.parseLong(row.remove(Constant.ROW_ID_COLUMN));
+                    if (asArray) {
+                        gson.toJson(row, HashMap.class, jsonWriter);
+                    } else {
+                        gson.toJson(row, writer);
+                        writer.write('\n');
+                    }
+                    pageCount++;
+                }
+            } finally {
+                cursor.close();
+            }
+            count += pageCount;
+            if (listener != null && pageCount > 0) {
+                listener.onProgress(count, -1);
+            }
+        } while (pageCount == DEFAULT_BATCH_SIZE);
+        if (asArray) {
+            jsonWriter.endArray();
         }
-        put(contentValues);
+        jsonWriter.flush();
+        writer.flush();
+        return count;
     }
 
     /**
@@ -188,7 +605,7 @@ public class ObjectStore {
         SQLiteDatabase database = mDataBase.getReadableDatabase();
         Cursor cursor = database.rawQuery("SELECT * FROM " + mOSName, null);
         if (cursor != null) {
-            return new OSCursor(cursor);
+            return new OSCursor(cursor, mPayloadCodec);
         }
         return null;
     }
@@ -248,7 +665,7 @@ public class ObjectStore {
                         groupBy, having, orderBy,
                         limit);
         if (cursor != null) {
-            return new OSCursor(cursor);
+            return new OSCursor(cursor, mPayloadCodec);
         }
         return null;
     }
@@ -284,4 +701,137 @@ public class ObjectStore {
                 null, null, null,
                 null);
     }
+
+    /**
+     * Fetch rows for a list of keys of an index.
+     * <p>
+     * Keys are fetched using IN queries of up to {@link #MAX_QUERY_ARGS} keys each,
+     * instead of one query per key.
+     * </p>
+     * <p>
+     * Each query reads the last committed data on its own, so with more than
+     * {@link #MAX_QUERY_ARGS} keys, rows written while fetching may be seen by some queries only.
+     * </p>
+     *
+     * @param indexName Name of an index on a single column, created via {@link #createIndex(String, ArrayList)}
+     * @param keys      Values of the index column to fetch, duplicates are fetched once
+     * @return {@link MultiGetResult} with rows in order of keys and keys not found
+     * @throws IllegalArgumentException if index doesn't exist or has more than one column,
+     *                                  or keys contain null
+     */
+    public MultiGetResult getMany(String indexName, Collection<String> keys) {
+        List<String> indexCols = mIndexCols.get(indexName);
+        if (indexCols == null) {
+            throw new IllegalArgumentException("Unknown index " + indexName);
+        }
+        if (indexCols.size() != 1) {
+            throw new IllegalArgumentException("Index " + indexName + " has more than one column");
+        }
+        String indexCol = indexCols.get(0);
+        ArrayList<String> uniqueKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        if (uniqueKeys.contains(null)) {
+            throw new IllegalArgumentException("keys must not contain null");
+        }
+        HashMap<String, HashMap<String, String>> found = new HashMap<>(uniqueKeys.size());
+        SQLiteDatabase database = mDataBase.getReadableDatabase();
+        for (int from = 0; from < uniqueKeys.size(); from += MAX_QUERY_ARGS) {
+            List<String> chunk = uniqueKeys.subList(from, Math.min(from + MAX_QUERY_ARGS, uniqueKeys.size()));
+            String[] placeholders = new String[chunk.size()];
+            Arrays.fill(placeholders, "?");
+            Cursor cursor = database.query(mOSName, null,
+                    indexCol + " IN (" + TextUtils.join(",", placeholders) + ")",
+                    chunk.toArray(new String[chunk.size()]), null, null, null, null);
+            OSCursor osCursor = new OSCursor(cursor, mPayloadCodec);
+            while (osCursor.moveToNext()) {
+                HashMap<String, String> row = new HashMap<>(osCursor.getRow());
+                if (!row.containsKey(indexCol)) {
+                    // OSCursor leaves out empty values, only the key "" can match without one
+                    row.put(indexCol, "");
+                }
+                found.put(row.get(indexCol), row);
+            }
+            osCursor.close();
+        }
+        LinkedHashMap<String, HashMap<String, String>> rows = new LinkedHashMap<>(found.size());
+        List<String> missingKeys = new ArrayList<>();
+        for (String key :
+                uniqueKeys) {
+            HashMap<String, String> row = found.get(key);
+            if (row != null) {
+                rows.put(key, row);
+            } else {
+                missingKeys.add(key);
+            }
+        }
+        return new MultiGetResult(rows, missingKeys);
+    }
+
+    /**
+     * Scan the whole objectstore in parallel on all available processors.
+     *
+     * @param reducer Reducer to combine rows into the result
+     * @return Combined result of all rows
+     * @see #parallelScan(String, String[], int, ScanReducer)
+     */
+    public <A> A parallelScan(ScanReducer<A> reducer) {
+        return parallelScan(null, null, Runtime.getRuntime().availableProcessors(), reducer);
+    }
+
+    /**
+     * Scan rows of the objectstore in parallel and reduce them into a single result.
+     * <p>
+     * Row id range of the objectstore is split into parts which are read and decoded
+     * concurrently by a fork join pool, each worker querying on its own reader connection
+     * (see {@link DataBase} for the concurrency model). Use it for passes over large stores
+     * where decoding rows is the bottleneck.
+     * </p>
+     * <p>
+     * Each part reads its last committed data, rows written during the scan may or may not be seen.
+     * </p>
+     * <p>
+     * Without write-ahead logging, or when called inside a transaction, there is no reader connection
+     * free for the workers, so rows are scanned sequentially on the calling thread instead.
+     * </p>
+     *
+     * @param selection     A filter declaring which rows to scan, formatted as an
+     *                      SQL WHERE clause (excluding the WHERE itself). Passing null
+     *                      will scan all rows.
+     * @param selectionArgs Values for ?s in selection
+     * @param parallelism   Number of threads to scan with, at least 1
+     * @param reducer       Reducer to combine rows into the result
+     * @return Combined result of matching rows, {@link ScanReducer#createAccumulator()} if there is none
+     * @throws IllegalArgumentException if parallelism is less than 1
+     */
+    public <A> A parallelScan(String selection, String[] selectionArgs,
+                              int parallelism, ScanReducer<A> reducer) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive, got " + parallelism);
+        }
+        SQLiteDatabase database = mDataBase.getReadableDatabase();
+        Cursor cursor = database.rawQuery("SELECT MIN(" + Constant.ROW_ID_COLUMN + "), MAX(" +
+                Constant.ROW_ID_COLUMN + ") FROM " + mOSName, null);
+        long start = 0, end = 0;
+        if (cursor.moveToFirst() && !cursor.isNull(0)) {
+            start = cursor.getLong(0);
+            end = cursor.getLong(1) + 1;
+        }
+        cursor.close();
+        if (start == end) {
+            return reducer.createAccumulator();
+        }
+        if (parallelism == 1 || !database.isWriteAheadLoggingEnabled() || database.inTransaction()) {
+            // Workers would wait for the only connection, which this thread may be holding
+            return new ScanTask<>(mDataBase, mOSName, mPayloadCodec, selection,
+                    selectionArgs, reducer, start, end, end - start).compute();
+        }
+        // A few parts per thread so that threads finishing early can steal work
+        long splitSize = Math.max(1, (end - start) / (parallelism * 4L));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new ScanTask<>(mDataBase, mOSName, mPayloadCodec, selection,
+                    selectionArgs, reducer, start, end, splitSize));
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
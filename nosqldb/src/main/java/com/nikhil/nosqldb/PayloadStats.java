@@ -0,0 +1,69 @@
+package com.nikhil.nosqldb;
+
+/**
+ * Size statistics of extra data payload stored in an ObjectStore.
+ *
+ * @author Nikhil
+ * @see ObjectStore#getPayloadStats()
+ */
+public class PayloadStats {
+    private long mRowCount;
+    private long mCompressedRowCount;
+    private long mRawBytes;
+    private long mStoredBytes;
+
+    PayloadStats(long rowCount, long compressedRowCount, long rawBytes, long storedBytes) {
+        mRowCount = rowCount;
+        mCompressedRowCount = compressedRowCount;
+        mRawBytes = rawBytes;
+        mStoredBytes = storedBytes;
+    }
+
+    /**
+     * @return number of rows having extra data
+     */
+    public long getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * @return number of rows having compressed extra data
+     */
+    public long getCompressedRowCount() {
+        return mCompressedRowCount;
+    }
+
+    /**
+     * @return size of extra data in bytes before compression
+     */
+    public long getRawBytes() {
+        return mRawBytes;
+    }
+
+    /**
+     * @return size of extra data in bytes as stored in database
+     */
+    public long getStoredBytes() {
+        return mStoredBytes;
+    }
+
+    /**
+     * @return bytes saved by compression
+     */
+    public long getSavedBytes() {
+        return mRawBytes - mStoredBytes;
+    }
+
+    /**
+     * @return stored size divided by raw size, 1 if nothing is stored
+     */
+    public double getCompressionRatio() {
+        return mRawBytes == 0 ? 1 : (double) mStoredBytes / mRawBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadStats{rows=" + mRowCount + ", compressedRows=" + mCompressedRowCount +
+                ", rawBytes=" + mRawBytes + ", storedBytes=" + mStoredBytes + "}";
+    }
+}
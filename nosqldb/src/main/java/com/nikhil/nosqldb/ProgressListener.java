@@ -0,0 +1,17 @@
+package com.nikhil.nosqldb;
+
+/**
+ * Callback to report progress of long running operations on database.
+ *
+ * @author Nikhil
+ */
+public interface ProgressListener {
+
+    /**
+     * Called periodically while operation is running
+     *
+     * @param done  Number of units (e.g. rows) processed so far
+     * @param total Total number of units, -1 if unknown
+     */
+    void onProgress(long done, long total);
+}
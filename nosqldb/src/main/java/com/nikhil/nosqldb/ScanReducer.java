@@ -0,0 +1,43 @@
+package com.nikhil.nosqldb;
+
+import java.util.HashMap;
+
+/**
+ * Reduce rows of an ObjectStore scanned in parallel into a single result.
+ * <p>
+ * Each range of the scan starts with its own accumulator from {@link #createAccumulator()},
+ * rows of the range are added to it on one thread and accumulators of neighbouring
+ * ranges are then combined, in row id order. Methods are called from multiple threads
+ * at once, so they must not share mutable state other than through the accumulators.
+ * </p>
+ *
+ * @param <A> Type of accumulated result
+ * @author Nikhil
+ * @see ObjectStore#parallelScan(String, String[], int, ScanReducer)
+ */
+public interface ScanReducer<A> {
+
+    /**
+     * @return new empty accumulator
+     */
+    A createAccumulator();
+
+    /**
+     * Add a row to the accumulator
+     *
+     * @param accumulator Accumulator of current range
+     * @param row         Row as column, value map. It is reused for the next row,
+     *                    copy it to keep it
+     * @return Accumulator including the row
+     */
+    A accumulate(A accumulator, HashMap<String, String> row);
+
+    /**
+     * Combine accumulators of two neighbouring ranges
+     *
+     * @param left  Accumulator of rows with lower row ids
+     * @param right Accumulator of rows with higher row ids
+     * @return Accumulator including rows of both ranges
+     */
+    A combine(A left, A right);
+}
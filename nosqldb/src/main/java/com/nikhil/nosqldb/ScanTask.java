@@ -0,0 +1,80 @@
+package com.nikhil.nosqldb;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nikhil.nosqldb.constant.Constant;
+import com.nikhil.nosqldb.utils.PayloadCodec;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork join task scanning rows of an ObjectStore whose row id is in [start, end).
+ * <p>
+ * Range is split in halves until it is not larger than split size, each part is read
+ * and decoded on its own thread, and so on its own reader connection.
+ * </p>
+ *
+ * @author Nikhil
+ */
+class ScanTask<A> extends RecursiveTask<A> {
+    private DataBase mDataBase;
+    private String mOSName;
+    private PayloadCodec mPayloadCodec;
+    private String mSelection;
+    private String[] mSelectionArgs;
+    private ScanReducer<A> mReducer;
+    private long mStart;
+    private long mEnd;
+    private long mSplitSize;
+
+    ScanTask(DataBase dataBase, String osName, PayloadCodec payloadCodec,
+             String selection, String[] selectionArgs, ScanReducer<A> reducer,
+             long start, long end, long splitSize) {
+        mDataBase = dataBase;
+        mOSName = osName;
+        mPayloadCodec = payloadCodec;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mReducer = reducer;
+        mStart = start;
+        mEnd = end;
+        mSplitSize = splitSize;
+    }
+
+    @Override
+    protected A compute() {
+        if (mEnd - mStart > mSplitSize) {
+            long middle = mStart + (mEnd - mStart) / 2;
+            ScanTask<A> left = new ScanTask<>(mDataBase, mOSName, mPayloadCodec, mSelection,
+                    mSelectionArgs, mReducer, mStart, middle, mSplitSize);
+            ScanTask<A> right = new ScanTask<>(mDataBase, mOSName, mPayloadCodec, mSelection,
+                    mSelectionArgs, mReducer, middle, mEnd, mSplitSize);
+            right.fork();
+            A leftResult = left.compute();
+            return mReducer.combine(leftResult, right.join());
+        }
+        return scanRange();
+    }
+
+    private A scanRange() {
+        String selection = Constant.ROW_ID_COLUMN + " >= " + mStart + " AND " +
+                Constant.ROW_ID_COLUMN + " < " + mEnd;
+        if (mSelection != null) {
+            selection += " AND (" + mSelection + ")";
+        }
+        SQLiteDatabase database = mDataBase.getReadableDatabase();
+        Cursor cursor = database.query(mOSName, null, selection, mSelectionArgs,
+                null, null, null, null);
+        OSCursor osCursor = new OSCursor(cursor, mPayloadCodec);
+        A accumulator = mReducer.createAccumulator();
+        try {
+            while (osCursor.moveToNext()) {
+                accumulator = mReducer.accumulate(accumulator, osCursor.getRow());
+            }
+        } finally {
+            osCursor.close();
+        }
+        return accumulator;
+    }
+}
@@ -8,4 +8,8 @@ public class Constant {
 
     public static final String EXTRA_DATA_COLUMN = "extra_data";
     public static final String ROW_ID_COLUMN = "_id";
+    public static final String INTERNAL_TABLE_PREFIX = "nosqldb_";
+    public static final String CHANGE_LOG_TABLE = INTERNAL_TABLE_PREFIX + "changes";
+    public static final String BACKUP_META_TABLE = INTERNAL_TABLE_PREFIX + "backup_meta";
+    public static final String BULK_LOAD_TABLE = INTERNAL_TABLE_PREFIX + "bulk_load";
 }
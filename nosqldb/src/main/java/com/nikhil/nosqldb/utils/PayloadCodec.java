@@ -0,0 +1,292 @@
+package com.nikhil.nosqldb.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compress and decompress the extra data payload of an ObjectStore row.
+ * <p>
+ * Compressed payloads are stored as BLOB with a small header
+ * (format byte followed by the raw length), uncompressed payloads stay as TEXT.
+ * A preset dictionary can be used to compress small documents sharing the same keys,
+ * its id (Adler-32 of the dictionary) is kept in the zlib header of the compressed payload,
+ * so rows compressed with older dictionaries can still be read after switching to a new one.
+ * </p>
+ *
+ * @author Nikhil
+ */
+public class PayloadCodec {
+    public static final int DEFAULT_THRESHOLD = 1024;
+    public static final int HEADER_LENGTH = 5;
+    private static final byte FORMAT_DEFLATE = 1;
+    private static final int BUFFER_SIZE = 4096;
+    /**
+     * Deflate can't compress better than this, longer raw length in header means corrupt payload
+     */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final int mThreshold;
+    private final byte[] mDictionary;
+    private final Map<Long, byte[]> mDictionaries;
+
+    /**
+     * @param threshold  Minimum payload size in bytes to compress
+     * @param dictionary Preset dictionary, null to compress without dictionary
+     */
+    public PayloadCodec(int threshold, byte[] dictionary) {
+        this(threshold, dictionary, new HashMap<Long, byte[]>());
+    }
+
+    /**
+     * @param threshold    Minimum payload size in bytes to compress
+     * @param dictionary   Preset dictionary, null to compress without dictionary
+     * @param dictionaries Dictionaries by id to read payloads compressed earlier, dictionary is added to it
+     */
+    public PayloadCodec(int threshold, byte[] dictionary, Map<Long, byte[]> dictionaries) {
+        mThreshold = threshold;
+        mDictionary = dictionary;
+        mDictionaries = dictionaries;
+        if (dictionary != null) {
+            dictionaries.put(getDictionaryId(dictionary), dictionary);
+        }
+    }
+
+    public int getThreshold() {
+        return mThreshold;
+    }
+
+    public byte[] getDictionary() {
+        return mDictionary;
+    }
+
+    /**
+     * Compress payload if it is above threshold.
+     *
+     * @param payload JSON payload of the row
+     * @return compressed payload with header, null if payload should be stored as it is
+     */
+    public byte[] compress(String payload) {
+        byte[] raw = payload.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < mThreshold) {
+            return null;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            if (mDictionary != null) {
+                deflater.setDictionary(mDictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + HEADER_LENGTH);
+            out.write(FORMAT_DEFLATE);
+            out.write(raw.length >>> 24);
+            out.write(raw.length >>> 16);
+            out.write(raw.length >>> 8);
+            out.write(raw.length);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            if (out.size() >= raw.length) {
+                return null;
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress payload created by {@link #compress(String)} with any of the dictionaries of this codec
+     *
+     * @param blob compressed payload with header
+     * @return JSON payload of the row
+     * @throws IllegalStateException if payload is corrupt or requires an unknown dictionary
+     */
+    public String decompress(byte[] blob) {
+        return decompress(blob, mDictionaries);
+    }
+
+    /**
+     * Decompress payload created by {@link #compress(String)}
+     *
+     * @param blob       compressed payload with header
+     * @param dictionary Preset dictionary used while compressing, null if none
+     * @return JSON payload of the row
+     * @throws IllegalStateException if payload is corrupt or requires another dictionary
+     */
+    public static String decompress(byte[] blob, byte[] dictionary) {
+        HashMap<Long, byte[]> dictionaries = new HashMap<>();
+        if (dictionary != null) {
+            dictionaries.put(getDictionaryId(dictionary), dictionary);
+        }
+        return decompress(blob, dictionaries);
+    }
+
+    /**
+     * Decompress payload created by {@link #compress(String)}
+     *
+     * @param blob         compressed payload with header
+     * @param dictionaries Preset dictionaries by id, see {@link #getDictionaryId(byte[])}
+     * @return JSON payload of the row
+     * @throws IllegalStateException if payload is corrupt or requires a dictionary not in dictionaries
+     */
+    public static String decompress(byte[] blob, Map<Long, byte[]> dictionaries) {
+        if (blob.length < HEADER_LENGTH || blob[0] != FORMAT_DEFLATE) {
+            throw new IllegalStateException("Unknown payload format");
+        }
+        int rawLength = getRawLength(blob);
+        if (rawLength < 0 || rawLength > (long) (blob.length - HEADER_LENGTH) * MAX_DEFLATE_RATIO) {
+            throw new IllegalStateException("Corrupt payload header");
+        }
+        byte[] raw = new byte[rawLength];
+        byte[] overflow = new byte[1];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob, HEADER_LENGTH, blob.length - HEADER_LENGTH);
+            int offset = 0;
+            // Keep inflating once raw is full, so the checksum at the end of stream is verified
+            while (!inflater.finished()) {
+                int count = offset < raw.length ? inflater.inflate(raw, offset, raw.length - offset)
+                        : inflater.inflate(overflow);
+                if (count == 0 && inflater.needsDictionary()) {
+                    long dictionaryId = inflater.getAdler() & 0xffffffffL;
+                    byte[] dictionary = dictionaries.get(dictionaryId);
+                    if (dictionary == null) {
+                        throw new IllegalStateException("Payload requires compression dictionary " + dictionaryId);
+                    }
+                    inflater.setDictionary(dictionary);
+                } else if (count == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Truncated payload");
+                } else if (offset == raw.length && count > 0) {
+                    throw new IllegalStateException("Payload longer than header");
+                }
+                offset += count;
+            }
+            if (offset != raw.length || inflater.getRemaining() > 0) {
+                throw new IllegalStateException("Payload length doesn't match header");
+            }
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw new IllegalStateException("Corrupt payload", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return id of dictionary, same as the one deflate keeps in header of payloads compressed with it
+     *
+     * @param dictionary Preset dictionary
+     * @return Adler-32 checksum of dictionary
+     */
+    public static long getDictionaryId(byte[] dictionary) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(dictionary, 0, dictionary.length);
+        return adler32.getValue();
+    }
+
+    /**
+     * Return size of uncompressed payload from header
+     *
+     * @param blob compressed payload, at least {@link #HEADER_LENGTH} bytes
+     * @return size of uncompressed payload in bytes
+     */
+    public static int getRawLength(byte[] blob) {
+        return ((blob[1] & 0xff) << 24) | ((blob[2] & 0xff) << 16)
+                | ((blob[3] & 0xff) << 8) | (blob[4] & 0xff);
+    }
+
+    /**
+     * Build a preset dictionary from sample payloads.
+     * <p>
+     * Keys and key-value pairs repeated across samples are collected,
+     * most valuable ones are placed at the end as deflate reaches them cheaper.
+     * </p>
+     *
+     * @param samples JSON payloads of sample rows
+     * @param maxSize Maximum size of dictionary in bytes
+     * @return dictionary, empty if samples share nothing
+     */
+    public static byte[] buildDictionary(Collection<String> samples, int maxSize) {
+        final HashMap<String, Integer> counts = new HashMap<>();
+        for (String sample :
+                samples) {
+            for (String token :
+                    tokenize(sample)) {
+                Integer count = counts.get(token);
+                counts.put(token, count == null ? 1 : count + 1);
+            }
+        }
+        int minCount = samples.size() > 1 ? 2 : 1;
+        List<String> tokens = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry :
+                counts.entrySet()) {
+            if (entry.getValue() >= minCount) {
+                tokens.add(entry.getKey());
+            }
+        }
+        Collections.sort(tokens, new Comparator<String>() {
+            @Override
+            public int compare(String lhs, String rhs) {
+                long lhsScore = (long) counts.get(lhs) * lhs.length();
+                long rhsScore = (long) counts.get(rhs) * rhs.length();
+                return lhsScore < rhsScore ? 1 : (lhsScore == rhsScore ? lhs.compareTo(rhs) : -1);
+            }
+        });
+        List<byte[]> selected = new ArrayList<>();
+        int size = 0;
+        for (String token :
+                tokens) {
+            byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length <= maxSize) {
+                selected.add(bytes);
+                size += bytes.length;
+            }
+        }
+        byte[] dictionary = new byte[size];
+        int offset = 0;
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            byte[] bytes = selected.get(i);
+            System.arraycopy(bytes, 0, dictionary, offset, bytes.length);
+            offset += bytes.length;
+        }
+        return dictionary;
+    }
+
+    /**
+     * Split JSON payload into distinct "key":value segments and their "key": prefixes
+     */
+    private static HashSet<String> tokenize(String payload) {
+        HashSet<String> tokens = new HashSet<>();
+        int start = 0;
+        for (int i = 0; i <= payload.length(); i++) {
+            char c = i < payload.length() ? payload.charAt(i) : ',';
+            if (c == ',' || c == '{' || c == '}') {
+                if (i - start > 2) {
+                    String segment = payload.substring(start, i);
+                    tokens.add(segment);
+                    int keyEnd = segment.indexOf("\":");
+                    if (keyEnd > 0) {
+                        tokens.add(segment.substring(0, keyEnd + 2));
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        return tokens;
+    }
+}
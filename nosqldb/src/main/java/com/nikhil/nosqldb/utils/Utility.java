@@ -1,9 +1,11 @@
 package com.nikhil.nosqldb.utils;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
 import com.nikhil.nosqldb.DataBase;
+import com.nikhil.nosqldb.constant.Constant;
 
 import java.util.ArrayList;
 
@@ -25,6 +27,15 @@ public class Utility {
         return false;
     }
 
+    public static boolean isIndexExist(DataBase dataBase, String indexName) {
+        SQLiteDatabase sqLiteDatabase = dataBase.getReadableDatabase();
+        Cursor dbCursor = sqLiteDatabase.rawQuery("select name from sqlite_master where type = 'index' and name = ?",
+                new String[]{indexName});
+        boolean exists = dbCursor.getCount() > 0;
+        dbCursor.close();
+        return exists;
+    }
+
     public static ArrayList<String> getOSCols(DataBase mDataBase, String mOSName) {
         SQLiteDatabase sqLiteDatabase = mDataBase.getReadableDatabase();
         Cursor dbCursor = sqLiteDatabase.query(mOSName, null, null, null, null, null, null);
@@ -41,4 +52,46 @@ public class Utility {
         }
         return dataList;
     }
+
+    /**
+     * Return names of all objectstores in the database, excluding internal tables
+     */
+    public static ArrayList<String> getOSNames(SQLiteDatabase sqLiteDatabase) {
+        Cursor dbCursor = sqLiteDatabase.rawQuery("select name from sqlite_master where type = 'table'" +
+                " and name not like 'sqlite\\_%' escape '\\' and name != 'android_metadata'" +
+                " and name not like '" + Constant.INTERNAL_TABLE_PREFIX.replace("_", "\\_") + "%' escape '\\'", null);
+        ArrayList<String> names = new ArrayList<>();
+        while (dbCursor.moveToNext()) {
+            names.add(dbCursor.getString(0));
+        }
+        dbCursor.close();
+        return names;
+    }
+
+    /**
+     * Copy current row of cursor to ContentValues keeping the type of every value
+     */
+    public static ContentValues cursorRowToContentValues(Cursor cursor) {
+        ContentValues values = new ContentValues();
+        String[] cols = cursor.getColumnNames();
+        for (int i = 0; i < cols.length; i++) {
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    values.putNull(cols[i]);
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values.put(cols[i], cursor.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values.put(cols[i], cursor.getDouble(i));
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    values.put(cols[i], cursor.getBlob(i));
+                    break;
+                default:
+                    values.put(cols[i], cursor.getString(i));
+            }
+        }
+        return values;
+    }
 }
@@ -0,0 +1,130 @@
+package com.nikhil.nosqldb.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PayloadCodec} and its on-disk format.
+ */
+public class PayloadCodecTest {
+
+    private static List<String> samples() {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            samples.add("{\"city\":\"Delhi\",\"country\":\"India\",\"age\":\"" + i +
+                    "\",\"bio\":\"lorem ipsum dolor sit amet\"}");
+        }
+        return samples;
+    }
+
+    private static String largePayload() {
+        StringBuilder payload = new StringBuilder("{\"city\":\"Delhi\",\"country\":\"India\"");
+        for (int i = 0; i < 20; i++) {
+            payload.append(",\"key").append(i).append("\":\"value value value ").append(i).append("\"");
+        }
+        return payload.append("}").toString();
+    }
+
+    @Test
+    public void roundTripWithoutDictionary() throws Exception {
+        String payload = largePayload();
+        byte[] compressed = new PayloadCodec(64, null).compress(payload);
+        assertNotNull(compressed);
+        assertTrue(compressed.length < payload.length());
+        assertEquals(payload, PayloadCodec.decompress(compressed, (byte[]) null));
+    }
+
+    @Test
+    public void roundTripWithDictionary() throws Exception {
+        byte[] dictionary = PayloadCodec.buildDictionary(samples(), 4096);
+        assertTrue(dictionary.length > 0);
+        String payload = largePayload();
+        byte[] compressed = new PayloadCodec(64, dictionary).compress(payload);
+        assertNotNull(compressed);
+        assertEquals(payload, PayloadCodec.decompress(compressed, dictionary));
+    }
+
+    @Test
+    public void headerHoldsFormatAndRawLength() throws Exception {
+        String payload = largePayload() + "\u00e9";
+        byte[] compressed = new PayloadCodec(64, null).compress(payload);
+        assertEquals(1, compressed[0]);
+        assertEquals(payload.getBytes("UTF-8").length, PayloadCodec.getRawLength(compressed));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingDictionaryFails() throws Exception {
+        byte[] dictionary = PayloadCodec.buildDictionary(samples(), 4096);
+        byte[] compressed = new PayloadCodec(64, dictionary).compress(largePayload());
+        PayloadCodec.decompress(compressed, (byte[]) null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void wrongDictionaryFails() throws Exception {
+        byte[] dictionary = PayloadCodec.buildDictionary(samples(), 4096);
+        byte[] compressed = new PayloadCodec(64, dictionary).compress(largePayload());
+        PayloadCodec.decompress(compressed, "\"other\":\"dictionary\"".getBytes("UTF-8"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unknownFormatFails() throws Exception {
+        PayloadCodec.decompress(new byte[]{9, 0, 0, 0, 1, 0}, (byte[]) null);
+    }
+
+    @Test
+    public void readsRowsOfOlderDictionary() throws Exception {
+        HashMap<Long, byte[]> dictionaries = new HashMap<>();
+        byte[] oldDictionary = PayloadCodec.buildDictionary(samples(), 4096);
+        String payload = largePayload();
+        byte[] compressed = new PayloadCodec(64, oldDictionary, dictionaries).compress(payload);
+        PayloadCodec codec = new PayloadCodec(64, "\"other\":\"dictionary\"".getBytes("UTF-8"), dictionaries);
+        assertEquals(2, dictionaries.size());
+        assertEquals(payload, codec.decompress(compressed));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void corruptRawLengthFails() throws Exception {
+        byte[] compressed = new PayloadCodec(64, null).compress(largePayload());
+        compressed[1] = 0x0f;
+        PayloadCodec.decompress(compressed, (byte[]) null);
+    }
+
+    @Test
+    public void rawLengthMismatchFails() throws Exception {
+        byte[] compressed = new PayloadCodec(64, null).compress(largePayload());
+        for (int delta :
+                new int[]{-1, 1}) {
+            byte[] corrupt = compressed.clone();
+            corrupt[4] += delta;
+            try {
+                PayloadCodec.decompress(corrupt, (byte[]) null);
+                fail("Length " + delta + " accepted");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void truncatedPayloadFails() throws Exception {
+        byte[] compressed = new PayloadCodec(64, null).compress(largePayload());
+        PayloadCodec.decompress(Arrays.copyOf(compressed, compressed.length - 3), (byte[]) null);
+    }
+
+    @Test
+    public void belowThresholdIsNotCompressed() throws Exception {
+        String payload = largePayload();
+        assertNull(new PayloadCodec(payload.length() + 1, null).compress(payload));
+    }
+
+    @Test
+    public void incompressibleIsNotCompressed() throws Exception {
+        assertNull(new PayloadCodec(1, null).compress("{\"a\":\"b\"}"));
+    }
+}